@@ -1 +1 @@
-mvn -Dexec.mainClass="cs340.getpet.GetPet" compile exec:java
\ No newline at end of file
+mvn -Dexec.mainClass="cs340.getpet.GetPet" -Dexec.args="%*" compile exec:java
\ No newline at end of file
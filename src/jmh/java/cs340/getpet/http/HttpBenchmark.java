@@ -0,0 +1,107 @@
+package cs340.getpet.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs340.getpet.persistence.Datasets;
+import cs340.getpet.persistence.Persistence;
+import cs340.getpet.persistence.Persistence.PersistenceException;
+
+/**
+ * Benchmarks whole requests, from the client to the handlers and back, against an in-process HttpServer.
+ * <p>
+ * The server is configured with TCP_NODELAY like {@link cs340.getpet.Server} does; otherwise every response waits on
+ * Nagle's algorithm and the benchmark measures little more than the delayed ACK timer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class HttpBenchmark {
+    @Param({ "1000", "100000" })
+    public int animals;
+
+    private Persistence persistence;
+    private HttpServer server;
+    private ExecutorService executor;
+    private HttpClient client;
+    private URI base;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, PersistenceException {
+        persistence = Datasets.persistence(animals);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", new StaticHttpHandler("/home.html"));
+        server.createContext("/persistence", new PersistenceHttpHandler(persistence));
+        server.start();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws PersistenceException {
+        server.stop(0);
+        executor.shutdown();
+        persistence.close();
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200)
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+        return response.body();
+    }
+
+    @Benchmark
+    public String getAnimal() throws IOException, InterruptedException {
+        int intakeNumber = 1 + ThreadLocalRandom.current().nextInt(animals);
+        return send(HttpRequest.newBuilder(base.resolve("/persistence/animal/" + intakeNumber)).build());
+    }
+
+    @Benchmark
+    public String search() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(base.resolve("/persistence/search"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"query\":{\"species\":\"dog\",\"sizes\":[\"small\"],\"limit\":100}}"))
+                .build());
+    }
+
+    @Benchmark
+    public String getCages() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(base.resolve("/persistence/cages")).build());
+    }
+
+    @Benchmark
+    public String getStaticFile() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(base.resolve("/js/search.js")).build());
+    }
+}
@@ -0,0 +1,74 @@
+package cs340.getpet.http;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs340.getpet.persistence.Animal;
+import cs340.getpet.persistence.Datasets;
+
+/**
+ * Benchmarks the JSON serialization of search results the way RestHttpHandler writes them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({ "1000", "100000" })
+    public int animals;
+
+    /**
+     * Either "reflective", for a default Gson instance, or "adapters", for the one the handlers share.
+     */
+    @Param({ "reflective", "adapters" })
+    public String mapper;
+
+    private Gson gson;
+    private Animal[] results;
+
+    @Setup
+    public void setUp() {
+        gson = mapper.equals("adapters") ? Json.GSON : new Gson();
+        results = new Animal[animals];
+        for (int i = 0; i < animals; ++i)
+            results[i] = Datasets.animal(i);
+    }
+
+    @Benchmark
+    public void serializeResults() throws IOException {
+        TypeAdapter<Animal> adapter = gson.getAdapter(Animal.class);
+        try (JsonWriter writer = gson.newJsonWriter(Writer.nullWriter())) {
+            writer.beginObject();
+            writer.name("results").beginArray();
+            for (Animal animal : results)
+                adapter.write(writer, animal);
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+
+    @Benchmark
+    public Animal deserializeAnimal() {
+        return gson.fromJson("{\"cageNumber\":5,\"species\":\"dog\",\"breed\":\"Shiba Inu\",\"size\":\"medium\",\"colors\":[\"gold\"],"
+                + "\"gender\":\"m\",\"weight\":42.0,\"vaccinated\":true,\"spayNeuter\":true,\"name\":\"Doge\",\"missing\":false}", Animal.class);
+    }
+}
@@ -0,0 +1,101 @@
+package cs340.getpet.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cs340.getpet.persistence.Persistence.PersistenceException;
+
+/**
+ * Generates reproducible sets of animals for benchmarks.
+ */
+public final class Datasets {
+    private static final String[] DOG_BREEDS = { "Shiba Inu", "Goberian", "Springer Spaniel", "Golden Doodle", "German Shepherd", "Corgi", "Beagle", "Labrador Retriever", "Border Collie", "Pug" };
+    private static final String[] CAT_BREEDS = { "Somali Cat", "Siamese", "Munchkin", "Maine Coon", "Persian", "Ragdoll", "Bengal", "Sphynx", "Tabby", "Bombay" };
+    private static final String[] SYLLABLES = { "ba", "co", "da", "fe", "gi", "ho", "ju", "ka", "li", "mo", "ne", "pi", "ra", "su", "to", "vi", "zu" };
+
+    private Datasets() {}
+
+    /**
+     * Generates an animal. The same index always generates the same animal.
+     *
+     * @param index the index of the animal
+     * @return the animal
+     */
+    public static Animal animal(int index) {
+        Random random = new Random(index);
+        Species species = random.nextBoolean() ? Species.DOG : Species.CAT;
+
+        Color[] allColors = Color.values();
+        Color[] colors = new Color[1 + random.nextInt(2)];
+        for (int i = 0; i < colors.length; ++i)
+            colors[i] = allColors[(random.nextInt(allColors.length) + i) % allColors.length];
+        if (colors.length == 2 && colors[0] == colors[1])
+            colors = new Color[] { colors[0] };
+
+        StringBuilder name = new StringBuilder();
+        for (int i = 0, n = 2 + random.nextInt(2); i < n; ++i)
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+
+        return new Animal.Builder()
+                .cageNumber(random.nextInt(200))
+                .species(species)
+                .breed((species == Species.DOG ? DOG_BREEDS : CAT_BREEDS)[random.nextInt(10)])
+                .size(Size.values()[random.nextInt(Size.values().length)])
+                .colors(colors)
+                .gender(random.nextBoolean() ? Gender.MALE : Gender.FEMALE)
+                .weight(1 + random.nextInt(100))
+                .vaccinated(random.nextBoolean())
+                .spayNeuter(random.nextBoolean())
+                .name(name.toString())
+                .missing(random.nextInt(20) == 0)
+                .build();
+    }
+
+    /**
+     * Creates an in-memory database holding the sample data plus the given number of generated animals.
+     *
+     * @param size the number of animals to generate
+     * @return the database
+     * @throws PersistenceException when the database could not be created
+     */
+    public static Persistence persistence(int size) throws PersistenceException {
+        return persistence(size, "cached");
+    }
+
+    /**
+     * Creates an in-memory database holding the sample data plus the given number of generated animals.
+     *
+     * @param size the number of animals to generate
+     * @param engine how searches are answered: "sql" by SQLite alone, "cached" by SQLite behind the animal and
+     *               search caches, or "columnar" by the in-memory bitmap indexes
+     * @return the database
+     * @throws PersistenceException when the database could not be created
+     */
+    public static Persistence persistence(int size, String engine) throws PersistenceException {
+        boolean cached = engine.equals("cached");
+        Persistence persistence = new Persistence(new Persistence.Configuration.Builder()
+                .animalCacheSize(cached ? 1024 : 0)
+                .searchCacheSize(cached ? 256 : 0)
+                .columnarSearch(engine.equals("columnar"))
+                .build());
+        // added in batches, as one transaction per animal would dominate the setup of the larger datasets
+        List<Animal> batch = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            batch.add(animal(i));
+            if (batch.size() == 10_000 || i == size - 1) {
+                persistence.newAnimals(batch);
+                batch.clear();
+            }
+        }
+        return persistence;
+    }
+
+    /**
+     * Creates a search query, which is otherwise only possible from within the persistence package.
+     */
+    public static SearchQuery query(Species species, Gender[] genders, String breed, Color[] colors, Size[] sizes, Integer cageNumber, boolean vaccinated, boolean spayNeuter, Integer limit) {
+        return new SearchQuery(species, genders, breed, colors, sizes, cageNumber, vaccinated, spayNeuter, limit, null, null);
+    }
+}
@@ -0,0 +1,91 @@
+package cs340.getpet.persistence;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cs340.getpet.persistence.Persistence.PersistenceException;
+
+/**
+ * Benchmarks the queries of Persistence, including the decoding of rows into animals, with SQLite alone, behind the
+ * animal and search caches, and with the columnar search engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({ "1000", "100000", "1000000" })
+    public int animals;
+    @Param({ "sql", "cached", "columnar" })
+    public String engine;
+
+    private Persistence persistence;
+
+    private final SearchQuery firstPage = Datasets.query(null, null, null, null, null, null, false, false, 50);
+    private final SearchQuery speciesAndSize = Datasets.query(Species.DOG, null, null, null, new Size[] { Size.SMALL, Size.MEDIUM }, null, false, false, 50);
+    private final SearchQuery colors = Datasets.query(null, null, null, new Color[] { Color.GOLD, Color.WHITE }, null, null, false, false, 50);
+    private final SearchQuery breed = Datasets.query(null, null, "shep", null, null, null, false, false, 50);
+    private final SearchQuery vaccinated = Datasets.query(Species.CAT, new Gender[] { Gender.FEMALE }, null, null, null, null, true, true, 50);
+
+    @Setup(Level.Trial)
+    public void setUp() throws PersistenceException {
+        persistence = Datasets.persistence(animals, engine);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws PersistenceException {
+        persistence.close();
+    }
+
+    @Benchmark
+    public Animal getAnimal() throws PersistenceException {
+        return persistence.getAnimal(1 + ThreadLocalRandom.current().nextInt(animals));
+    }
+
+    @Benchmark
+    public Cage[] getCages() throws PersistenceException {
+        return persistence.getCages();
+    }
+
+    @Benchmark
+    public int searchFirstPage(Blackhole blackhole) throws PersistenceException {
+        return persistence.search(firstPage, blackhole::consume);
+    }
+
+    @Benchmark
+    public int searchSpeciesAndSize(Blackhole blackhole) throws PersistenceException {
+        return persistence.search(speciesAndSize, blackhole::consume);
+    }
+
+    @Benchmark
+    public int searchColors(Blackhole blackhole) throws PersistenceException {
+        return persistence.search(colors, blackhole::consume);
+    }
+
+    @Benchmark
+    public int searchBreed(Blackhole blackhole) throws PersistenceException {
+        return persistence.search(breed, blackhole::consume);
+    }
+
+    @Benchmark
+    public int searchVaccinated(Blackhole blackhole) throws PersistenceException {
+        return persistence.search(vaccinated, blackhole::consume);
+    }
+}
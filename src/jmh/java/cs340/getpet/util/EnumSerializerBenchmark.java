@@ -0,0 +1,50 @@
+package cs340.getpet.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs340.getpet.persistence.Color;
+
+/**
+ * Benchmarks the conversion of enum constants to and from their serialized names, through EnumSerializer and through
+ * the codec held by the enum itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumSerializerBenchmark {
+    private final Color color = Color.LIGHT_GRAY;
+    private final String name = "lGray";
+
+    @Benchmark
+    public String serialize() {
+        return EnumSerializer.toString(color, Color.class);
+    }
+
+    @Benchmark
+    public Color deserialize() {
+        return EnumSerializer.fromString(name, Color.class);
+    }
+
+    @Benchmark
+    public String serializeConstant() {
+        return color.toString();
+    }
+
+    @Benchmark
+    public Color deserializeConstant() {
+        return Color.fromString(name);
+    }
+}
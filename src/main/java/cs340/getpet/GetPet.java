@@ -9,19 +9,27 @@ import java.io.IOException;
 public class GetPet {
     private static final Logger logger = LoggerFactory.getLogger(GetPet.class);
 
+    /**
+     * Starts the server.
+     *
+     * @param args optionally, the database file to use (":memory:" by default), followed by a snapshot saved by
+     *             {@link Persistence#saveSnapshot(String)} to restore into it if it is empty
+     */
     public static void main(String[] args) {
         Server server;
         try {
             server = new Server(new Server.Configuration.Builder()
                     .homePage("/home.html")
                     .address("localhost", 8080)
-                    .databaseName(":memory:")
+                    .databaseName(args.length > 0 ? args[0] : ":memory:")
+                    .snapshot(args.length > 1 ? args[1] : null)
                     .build());
         } catch (IOException e) {
             logger.error("Failed to instantiate server", e);
             return;
         }
 
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "getpet-shutdown"));
         try {
             server.run();
         } catch (Persistence.PersistenceException | IOException e) {
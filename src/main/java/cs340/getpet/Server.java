@@ -1,16 +1,24 @@
 package cs340.getpet;
 
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cs340.getpet.http.BoundedExecutor;
+import cs340.getpet.http.ChangeFeedHttpHandler;
+import cs340.getpet.http.ExportHttpHandler;
+import cs340.getpet.http.MetricsHttpHandler;
+import cs340.getpet.http.RequestMetrics;
 import cs340.getpet.http.StaticHttpHandler;
 import cs340.getpet.http.PersistenceHttpHandler;
 import cs340.getpet.persistence.Persistence;
 
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Serves the pages for the website as well as hosts the RESTful DB interaction API.
@@ -18,8 +26,17 @@ import java.net.InetSocketAddress;
 public class Server {
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
 
+    static {
+        // Send responses without waiting for Nagle's algorithm, which otherwise holds back the body written after
+        // the headers until the client's delayed ACK arrives, adding ~40 ms to every request.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
     private final Configuration configuration;
     private final HttpServer http;
+    private Persistence persistence;
+    private ChangeFeedHttpHandler changeFeed;
 
     public Server(Configuration conf) throws IOException {
         configuration = conf;
@@ -27,15 +44,37 @@ public class Server {
     }
 
     public void run() throws IOException, Persistence.PersistenceException {
-        // connect to database
-        Persistence persistence = new Persistence(configuration.databaseName);
+        // connect to database, with no more read connections than requests that can run at once
+        persistence = new Persistence(new Persistence.Configuration.Builder()
+                .database(configuration.databaseName)
+                .snapshot(configuration.snapshot)
+                .readConnections(configuration.executionModel == ExecutionModel.SINGLE_THREAD
+                        ? 1
+                        : Math.min(configuration.threads, Runtime.getRuntime().availableProcessors()))
+                .build());
 
         // bind server to the address
         http.bind(configuration.address, -1);
 
-        // create contexts
-        http.createContext("/", new StaticHttpHandler(configuration.homePage));
-        http.createContext("/persistence", new PersistenceHttpHandler(persistence));
+        // choose the threads that requests are handled on
+        BoundedExecutor executor = createExecutor();
+        http.setExecutor(executor);
+
+        // create contexts, recording metrics of every request including those rejected while overloaded
+        RequestMetrics metrics = new RequestMetrics();
+        changeFeed = new ChangeFeedHttpHandler(persistence);
+        HttpContext[] contexts = {
+            http.createContext("/", new StaticHttpHandler(configuration.homePage)),
+            http.createContext("/persistence", new PersistenceHttpHandler(persistence)),
+            http.createContext("/persistence/changes", changeFeed),
+            http.createContext("/export", new ExportHttpHandler(persistence)),
+            http.createContext("/metrics", new MetricsHttpHandler(metrics, persistence)),
+        };
+        for (HttpContext context : contexts) {
+            context.getFilters().add(metrics.filter(context.getPath()));
+            if (executor != null)
+                context.getFilters().add(executor.overloadFilter());
+        }
         
         // start http server
         http.start();
@@ -43,27 +82,117 @@ public class Server {
         logger.info("Successfully started on " + configuration.address);
     }
 
+    /**
+     * Stops the server: disconnects the change feed clients, which would otherwise keep their exchanges open, gives
+     * the other exchanges a moment to finish, and closes the database.
+     */
+    public void stop() {
+        if (changeFeed != null)
+            changeFeed.close();
+        http.stop(1);
+        if (persistence != null) {
+            try {
+                persistence.close();
+            } catch (Persistence.PersistenceException e) {
+                logger.error("Failed to close the database", e);
+            }
+        }
+        logger.info("Stopped");
+    }
+
+    /**
+     * Creates the executor for the configured execution model.
+     *
+     * @return the executor, or null to handle every request on the server's dispatcher thread
+     */
+    private BoundedExecutor createExecutor() {
+        final int maxExchanges = configuration.threads + configuration.queueCapacity;
+
+        switch (configuration.executionModel) {
+            case SINGLE_THREAD:
+                return null;
+            case VIRTUAL_THREADS:
+                try {
+                    // looked up reflectively, as virtual threads only exist on Java 21+
+                    Executor virtualThreads = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                    return new BoundedExecutor(virtualThreads, maxExchanges);
+                } catch (ReflectiveOperationException e) {
+                    logger.warn("Virtual threads are not supported by this JVM, falling back to a thread pool");
+                }
+                // fall through
+            case THREAD_POOL:
+            default:
+                return new BoundedExecutor(Executors.newFixedThreadPool(configuration.threads), maxExchanges);
+        }
+    }
+
+    /**
+     * The ways in which the server can run the handlers of requests.
+     */
+    public enum ExecutionModel {
+        /**
+         * Every request is handled on the server's single dispatcher thread.
+         */
+        SINGLE_THREAD,
+        /**
+         * Requests are handled on a fixed pool of platform threads.
+         */
+        THREAD_POOL,
+        /**
+         * Every request is handled on its own virtual thread. Requires Java 21+; older JVMs use a thread pool.
+         */
+        VIRTUAL_THREADS,
+    }
+
     public static final class Configuration {
         public final String homePage;
         public final InetSocketAddress address;
         public final String databaseName;
+        /**
+         * The database file to restore into the database if it is empty, or null to use the sample data.
+         */
+        public final String snapshot;
+        /**
+         * How the handlers of requests are run.
+         */
+        public final ExecutionModel executionModel;
+        /**
+         * The number of requests handled at once; ignored for the single thread model.
+         */
+        public final int threads;
+        /**
+         * The number of requests that may wait for a thread before further requests are rejected with 503.
+         */
+        public final int queueCapacity;
 
         private Configuration(Builder b) {
             homePage = b.homePage;
             address = b.address;
             databaseName = b.databaseName;
+            snapshot = b.snapshot;
+            executionModel = b.executionModel;
+            threads = b.threads;
+            queueCapacity = b.queueCapacity;
         }
 
         public static class Builder {
             private String homePage;
             private InetSocketAddress address;
             private String databaseName;
+            private String snapshot;
+            private ExecutionModel executionModel = ExecutionModel.THREAD_POOL;
+            private int threads = 2 * Runtime.getRuntime().availableProcessors();
+            private int queueCapacity = 256;
 
             public Builder() {}
             public Configuration build() { return new Configuration(this); }
             public Builder homePage(String homePage) { this.homePage = homePage; return this; }
             public Builder address(String address, int port) { this.address = new InetSocketAddress(address, port); return this; }
             public Builder databaseName(String databaseName) { this.databaseName = databaseName; return this; }
+            public Builder snapshot(String snapshot) { this.snapshot = snapshot; return this; }
+            public Builder executionModel(ExecutionModel executionModel) { this.executionModel = executionModel; return this; }
+            public Builder threads(int threads) { this.threads = threads; return this; }
+            public Builder queueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; return this; }
         }
     }
 }
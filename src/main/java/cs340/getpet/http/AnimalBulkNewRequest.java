@@ -0,0 +1,26 @@
+package cs340.getpet.http;
+
+import cs340.getpet.http.rest.RequestBody;
+import cs340.getpet.http.rest.ValidationException;
+import cs340.getpet.http.rest.Validator;
+import cs340.getpet.persistence.Animal;
+
+/**
+ * A batch of animals to add. Only the batch itself is validated up front; each animal is validated on its own so
+ * that invalid animals can be reported without rejecting the rest.
+ */
+final class AnimalBulkNewRequest implements RequestBody {
+    public final Animal[] animals;
+
+    AnimalBulkNewRequest(Animal[] animals) {
+        this.animals = animals;
+    }
+
+    @Override
+    public void validate() throws ValidationException {
+        Validator.assertNonNull(animals, "Animals must not be null");
+        Validator.assertFalse(animals.length == 0, "Animals must not be empty");
+        Validator.assertFalse(animals.length > PersistenceHttpHandler.MAX_BULK_ANIMALS,
+                "At most " + PersistenceHttpHandler.MAX_BULK_ANIMALS + " animals can be added at once");
+    }
+}
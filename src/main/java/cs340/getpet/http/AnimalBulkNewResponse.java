@@ -0,0 +1,35 @@
+package cs340.getpet.http;
+
+import cs340.getpet.http.rest.ResponseBody;
+
+/**
+ * The outcome of adding each animal of an {@link AnimalBulkNewRequest}, in the same order.
+ */
+final class AnimalBulkNewResponse implements ResponseBody {
+    public final Result[] results;
+
+    AnimalBulkNewResponse(Result[] results) {
+        this.results = results;
+    }
+
+    /**
+     * Either the intake number assigned to an added animal, or the reason the animal was not added.
+     */
+    static final class Result {
+        public final Integer intakeNumber;
+        public final String error;
+
+        Result(Integer intakeNumber, String error) {
+            this.intakeNumber = intakeNumber;
+            this.error = error;
+        }
+
+        static Result added(int intakeNumber) {
+            return new Result(intakeNumber, null);
+        }
+
+        static Result error(String error) {
+            return new Result(null, error);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package cs340.getpet.http;
+
+import cs340.getpet.http.rest.ResponseBody;
+import cs340.getpet.persistence.Animal;
+
+final class AnimalGetResponse implements ResponseBody {
+    public final Animal animal;
+
+    AnimalGetResponse(Animal animal) {
+        this.animal = animal;
+    }
+}
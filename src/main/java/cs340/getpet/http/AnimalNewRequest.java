@@ -0,0 +1,40 @@
+package cs340.getpet.http;
+
+import cs340.getpet.http.rest.RequestBody;
+import cs340.getpet.http.rest.ValidationException;
+import cs340.getpet.http.rest.Validator;
+import cs340.getpet.persistence.Animal;
+
+final class AnimalNewRequest implements RequestBody {
+    public final Animal animal;
+
+    AnimalNewRequest(Animal animal) {
+        this.animal = animal;
+    }
+
+    @Override
+    public void validate() throws ValidationException {
+        validate(animal);
+    }
+
+    /**
+     * Validates an animal to be added to the database.
+     *
+     * @param animal the animal
+     * @throws ValidationException when the animal is invalid
+     */
+    static void validate(Animal animal) throws ValidationException {
+        Validator.assertNonNull(animal, "Animal must not be null");
+        Validator.assertNull(animal.intakeNumber, "Animal must not contain an intake number; those are auto-assigned");
+        Validator.assertFalse(animal.cageNumber < 0, "Cage number cannot be negative");
+        Validator.assertNonNull(animal.species, "Animal must have species");
+        Validator.assertNonNull(animal.breed, "Animal must have breed");
+        Validator.assertMatches(animal.breed, "^[a-zA-Z ]{1,50}$", "Animal breed must be alphabetic and <= 50 characters");
+        Validator.assertNonNull(animal.size, "Animal must have size");
+        Validator.assertNonNull(animal.colors, "Animal must have one or more color");
+        Validator.assertFalse(animal.colors.length == 0, "Animal must have one or more color");
+        Validator.assertNonNull(animal.gender, "Animal must have gender");
+        Validator.assertTrue(animal.weight >= 1.0 && animal.weight <= 250.0, "Animal weight must be between 1 and 250 lbs.");
+        Validator.assertMatches(animal.name, "^[a-zA-Z ]{1,50}$", "Animal name must be alphabetic and <= 50 characters");
+    }
+}
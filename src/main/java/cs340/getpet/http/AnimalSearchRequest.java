@@ -0,0 +1,32 @@
+package cs340.getpet.http;
+
+import cs340.getpet.http.rest.RequestBody;
+import cs340.getpet.http.rest.ValidationException;
+import cs340.getpet.http.rest.Validator;
+import cs340.getpet.persistence.SearchCursor;
+import cs340.getpet.persistence.SearchQuery;
+
+final class AnimalSearchRequest implements RequestBody {
+    public final SearchQuery query;
+
+    AnimalSearchRequest(SearchQuery query) {
+        this.query = query;
+    }
+
+    @Override
+    public void validate() throws ValidationException {
+        Validator.assertNonNull(query, "Query must not be null");
+        Validator.assertMatches(query.breed, "^[a-zA-Z ]{0,50}$", "Breed must be alphabetic and 50 characters or less.");
+        if (query.cageNumber != null)
+            Validator.assertFalse(query.cageNumber < 0, "Cage number cannot be negative");
+        if (query.limit != null)
+            Validator.assertTrue(query.limit > 0, "Limit must be positive");
+        if (query.after != null) {
+            try {
+                SearchCursor.decode(query.after, query.sortOrDefault());
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Invalid cursor", e);
+            }
+        }
+    }
+}
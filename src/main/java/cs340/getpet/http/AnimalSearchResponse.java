@@ -0,0 +1,41 @@
+package cs340.getpet.http;
+
+import java.io.IOException;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import cs340.getpet.http.rest.StreamingResponseBody;
+import cs340.getpet.persistence.Animal;
+
+/**
+ * A page of search results, streamed to the client in the form {@code {"results": [...], "next": "..."}}, where
+ * {@code next} is the cursor of the next page and is omitted on the last page.
+ * <p>
+ * The search runs before the response is sent, so that a failed search is still answered with an error; only the
+ * serialization of the results is streamed.
+ */
+final class AnimalSearchResponse implements StreamingResponseBody {
+    private final Animal[] results;
+    private final String next;
+
+    AnimalSearchResponse(Animal[] results, String next) {
+        this.results = results;
+        this.next = next;
+    }
+
+    @Override
+    public void write(JsonWriter writer, Gson gson) throws IOException {
+        final TypeAdapter<Animal> adapter = gson.getAdapter(Animal.class);
+
+        writer.beginObject();
+        writer.name("results").beginArray();
+        for (Animal animal : results)
+            adapter.write(writer, animal);
+        writer.endArray();
+        if (next != null)
+            writer.name("next").value(next);
+        writer.endObject();
+    }
+}
@@ -0,0 +1,109 @@
+package cs340.getpet.http;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An executor for an HttpServer that limits how many exchanges may be running or waiting at once.
+ * <p>
+ * The HttpServer hands the executor an exchange before its request has been read, so a rejected exchange cannot be
+ * answered directly. Instead it is run on a few threads of its own, flagged as rejected, and the
+ * {@link #overloadFilter()} installed on each context answers it with 503 Service Unavailable without running its
+ * handler. Rejected exchanges are never run on the server's dispatcher thread, where reading the request of one slow
+ * client would hold up accepting and dispatching every other one. When every one of those threads is busy, e.g.
+ * reading from slow clients, the exchange is refused outright rather than queued, and the server closes its
+ * connection.
+ */
+public final class BoundedExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedExecutor.class);
+
+    private static final ThreadLocal<Boolean> REJECTED = ThreadLocal.withInitial(() -> false);
+    private static final int REJECTION_THREADS = 4;
+
+    private final Executor delegate;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor rejections;
+
+    /**
+     * @param delegate the executor to run accepted exchanges on
+     * @param maxExchanges the maximum number of exchanges running or waiting to run on the delegate
+     */
+    public BoundedExecutor(Executor delegate, int maxExchanges) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxExchanges);
+        this.rejections = new ThreadPoolExecutor(0, REJECTION_THREADS, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "getpet-rejected");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Runnable exchange) {
+        if (permits.tryAcquire()) {
+            try {
+                delegate.execute(() -> {
+                    try {
+                        exchange.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                permits.release();
+            }
+        }
+
+        try {
+            rejections.execute(() -> {
+                REJECTED.set(true);
+                try {
+                    exchange.run();
+                } finally {
+                    REJECTED.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Closing a connection while too saturated to answer it");
+            throw e;
+        }
+    }
+
+    /**
+     * @return a filter that answers exchanges rejected by this executor with 503 Service Unavailable
+     */
+    public Filter overloadFilter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                if (REJECTED.get()) {
+                    logger.warn("HTTP 503: " + exchange.getRequestURI().getPath());
+                    try {
+                        exchange.getResponseHeaders().set("Retry-After", "1");
+                        exchange.sendResponseHeaders(503, -1);
+                    } finally {
+                        exchange.close();
+                    }
+                } else
+                    chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return "Rejects exchanges when the server is saturated";
+            }
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package cs340.getpet.http;
+
+import cs340.getpet.http.rest.ResponseBody;
+
+final class BreedsGetResponse implements ResponseBody {
+    public final String[] breeds;
+
+    BreedsGetResponse(String[] breeds) {
+        this.breeds = breeds;
+    }
+}
@@ -0,0 +1,12 @@
+package cs340.getpet.http;
+
+import cs340.getpet.http.rest.ResponseBody;
+import cs340.getpet.persistence.Cage;
+
+final class CagesGetResponse implements ResponseBody {
+    public final Cage[] cages;
+
+    CagesGetResponse(Cage[] cages) {
+        this.cages = cages;
+    }
+}
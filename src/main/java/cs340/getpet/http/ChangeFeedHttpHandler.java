@@ -0,0 +1,393 @@
+package cs340.getpet.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cs340.getpet.persistence.Animal;
+import cs340.getpet.persistence.AnimalChange;
+import cs340.getpet.persistence.Persistence;
+import cs340.getpet.persistence.Species;
+
+/**
+ * HTTP handler that streams the changes committed to the database as Server-Sent Events at
+ * {@code /persistence/changes}, so that pages can update themselves instead of polling.
+ * <p>
+ * Each write produces a {@code created} or {@code updated} event holding the animal, or a {@code deleted} event
+ * holding its intake number, followed by a {@code cage} event for each cage whose counts it changed, holding the
+ * change in the number of dogs and cats, e.g. {@code {"cageNumber":5,"dogDelta":-1,"catDelta":0}}.
+ * <p>
+ * The most recent events are kept in a ring buffer, so a client that reconnects with the {@code Last-Event-ID}
+ * header, as browsers do, is sent the events that it missed. When they are no longer buffered, or were sent by an
+ * earlier run of the server, the client is sent a {@code reset} event instead and should re-fetch what it shows.
+ * <p>
+ * The handler returns as soon as a client has subscribed, so clients do not hold on to the threads that handle
+ * requests. Events are formatted once and queued to each client, and written to it on a fixed pool of delivery
+ * threads, on which each client has at most one write pending. A client whose queue overflows because it is not
+ * reading fast enough is disconnected, and catches up from the ring buffer when it reconnects.
+ * <p>
+ * Writing to a client that has stopped reading blocks once its TCP window is full, and HttpServer offers no way to
+ * abort a write to one of its connections. A watchdog therefore disconnects clients whose write has been blocked for
+ * {@value #WRITE_TIMEOUT_SECONDS} seconds: they get no further events, their exchange is closed as soon as the write
+ * returns, and a delivery thread is added in place of the one they hold, so that clients that do read are not held
+ * up behind them.
+ */
+public class ChangeFeedHttpHandler implements HttpHandler, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedHttpHandler.class);
+
+    private static final int HISTORY = 1024;
+    private static final int CLIENT_QUEUE_CAPACITY = 256;
+    private static final int DELIVERY_THREADS = 4;
+    /**
+     * The most delivery threads added in place of threads held by blocked writes.
+     */
+    private static final int MAX_REPLACEMENT_THREADS = 64;
+    private static final long WRITE_TIMEOUT_SECONDS = 10;
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * How long browsers wait before reconnecting, sent to each client as it subscribes.
+     */
+    private static final byte[] RETRY = "retry: 2000\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Persistence persistence;
+    private final AnimalChange.Listener listener = this::publish;
+    /**
+     * Distinguishes the event IDs of this run of the server from those of earlier runs.
+     */
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    /**
+     * The clients that are sent new events.
+     */
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    /**
+     * The clients whose exchange is still open, including dropped clients still being written to.
+     */
+    private final Set<Client> open = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor delivery = new ThreadPoolExecutor(DELIVERY_THREADS, DELIVERY_THREADS,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreads("getpet-changes"));
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(daemonThreads("getpet-changes-heartbeat"));
+    // guarded by delivery
+    private int replacementThreads;
+
+    // guarded by this
+    private final byte[][] history = new byte[HISTORY][];
+    private long lastEventId;
+
+    public ChangeFeedHttpHandler(Persistence persistence) {
+        this.persistence = persistence;
+        persistence.addChangeListener(listener);
+        // comments keep proxies from timing out idle streams, and find clients that have gone away
+        heartbeat.scheduleWithFixedDelay(() -> {
+            for (Client client : clients)
+                client.offer(HEARTBEAT);
+        }, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        heartbeat.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (Client client : open)
+                client.checkBlocked(now);
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        final String requestPath = exchange.getRequestURI().getPath();
+
+        if (!requestPath.equals("/persistence/changes")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            logger.info("HTTP 404: " + requestPath);
+            return;
+        }
+
+        if (!exchange.getRequestMethod().equals("GET")) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            logger.info("HTTP 405: " + requestPath);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, 0);
+        logger.info("HTTP 200: " + requestPath);
+
+        // the exchange is left open, and closed by a delivery thread once the client disconnects or is dropped
+        subscribe(new Client(exchange), exchange.getRequestHeaders().getFirst("Last-Event-ID"));
+    }
+
+    /**
+     * Queues the events that a client missed, or a reset, and the events published from then on.
+     */
+    private synchronized void subscribe(Client client, String lastEventIdHeader) {
+        client.offer(RETRY);
+
+        if (lastEventIdHeader != null) {
+            long missedFrom = resumeFrom(lastEventIdHeader);
+            if (missedFrom > 0 && lastEventId - missedFrom < CLIENT_QUEUE_CAPACITY - 1) {
+                for (long id = missedFrom; id <= lastEventId; ++id)
+                    client.offer(history[(int) (id % HISTORY)]);
+            } else
+                client.offer(frame(lastEventId, "reset", "{}"));
+        }
+
+        open.add(client);
+        clients.add(client);
+    }
+
+    /**
+     * @return the ID of the first event that a client which last saw the given event has missed, or 0 if the
+     *         missed events are no longer buffered
+     */
+    private long resumeFrom(String lastEventIdHeader) {
+        int separator = lastEventIdHeader.indexOf('-');
+        if (separator == -1 || !lastEventIdHeader.substring(0, separator).equals(runId))
+            return 0;
+
+        long seen;
+        try {
+            seen = Long.parseLong(lastEventIdHeader.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        return seen >= 0 && seen <= lastEventId && lastEventId - seen <= HISTORY ? seen + 1 : 0;
+    }
+
+    /**
+     * Formats the events of a change, buffers them and queues them to every client. Called on the database's writer
+     * thread, so it only formats and queues.
+     */
+    private synchronized void publish(AnimalChange change) {
+        StringWriter data = new StringWriter();
+        try (JsonWriter json = Json.GSON.newJsonWriter(data)) {
+            if (change.kind == AnimalChange.Kind.DELETED) {
+                json.beginObject();
+                json.name("intakeNumber").value(change.intakeNumber);
+                json.endObject();
+            } else
+                Json.GSON.getAdapter(Animal.class).write(json, change.animal);
+        } catch (IOException e) {
+            throw new AssertionError("StringWriter does not throw", e);
+        }
+        publish(change.kind.name().toLowerCase(Locale.ROOT), data.toString());
+
+        for (Map.Entry<Integer, int[]> cage : cageDeltas(change).entrySet()) {
+            int[] delta = cage.getValue();
+            if (delta[0] != 0 || delta[1] != 0)
+                publish("cage", "{\"cageNumber\":" + cage.getKey() + ",\"dogDelta\":" + delta[0] + ",\"catDelta\":" + delta[1] + "}");
+        }
+    }
+
+    private void publish(String event, String data) {
+        byte[] frame = frame(++lastEventId, event, data);
+        history[(int) (lastEventId % HISTORY)] = frame;
+        for (Client client : clients)
+            client.offer(frame);
+    }
+
+    /**
+     * The change in the number of dogs and cats in each cage that a change made, counting every species other than
+     * dogs as cats, as the cage counts of the database do.
+     */
+    private static Map<Integer, int[]> cageDeltas(AnimalChange change) {
+        Map<Integer, int[]> deltas = new TreeMap<>();
+        if (change.previousSpecies != null)
+            deltas.computeIfAbsent(change.previousCageNumber, c -> new int[2])[change.previousSpecies == Species.DOG ? 0 : 1] -= 1;
+        if (change.animal != null)
+            deltas.computeIfAbsent(change.animal.cageNumber, c -> new int[2])[change.animal.species == Species.DOG ? 0 : 1] += 1;
+        return deltas;
+    }
+
+    private byte[] frame(long id, String event, String data) {
+        return ("id: " + runId + "-" + id + "\nevent: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stops publishing changes and disconnects every client.
+     */
+    @Override
+    public void close() {
+        persistence.removeChangeListener(listener);
+        heartbeat.shutdownNow();
+        for (Client client : clients)
+            client.drop();
+        delivery.shutdown();
+    }
+
+    /**
+     * Adds a delivery thread in place of one held by a blocked write, if there is room for another.
+     *
+     * @return whether a thread was added, to be removed again with {@link #removeReplacementThread()}
+     */
+    private boolean addReplacementThread() {
+        synchronized (delivery) {
+            if (replacementThreads == MAX_REPLACEMENT_THREADS)
+                return false;
+            int size = DELIVERY_THREADS + ++replacementThreads;
+            delivery.setMaximumPoolSize(size);
+            delivery.setCorePoolSize(size);
+            return true;
+        }
+    }
+
+    private void removeReplacementThread() {
+        synchronized (delivery) {
+            int size = DELIVERY_THREADS + --replacementThreads;
+            delivery.setCorePoolSize(size);
+            delivery.setMaximumPoolSize(size);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A subscribed client and the events queued to it.
+     */
+    private final class Client {
+        final HttpExchange exchange;
+        final OutputStream out;
+        final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_CAPACITY);
+        /**
+         * Whether a delivery thread is writing to the client, so that only one does at a time.
+         */
+        final AtomicBoolean writing = new AtomicBoolean();
+        volatile boolean dropped;
+        /**
+         * When the write in progress started, or 0 if the client is not being written to.
+         */
+        volatile long writeStartedNanos;
+        /**
+         * Whether a write to the client has been found blocked.
+         */
+        final AtomicBoolean blocked = new AtomicBoolean();
+        /**
+         * Whether a delivery thread has been added in place of the one writing to the client; guarded by this.
+         */
+        boolean replaced;
+
+        Client(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        void offer(byte[] frame) {
+            if (dropped)
+                return;
+            if (!queue.offer(frame)) {
+                logger.info("Disconnecting slow change feed client " + exchange.getRemoteAddress());
+                drop();
+                return;
+            }
+            deliver();
+        }
+
+        void drop() {
+            dropped = true;
+            clients.remove(this);
+            deliver();
+        }
+
+        /**
+         * Disconnects the client if a write to it has been blocked for too long, adding a delivery thread in place
+         * of the one that the write holds.
+         */
+        void checkBlocked(long now) {
+            long started = writeStartedNanos;
+            if (started == 0 || now - started < TimeUnit.SECONDS.toNanos(WRITE_TIMEOUT_SECONDS) || !blocked.compareAndSet(false, true))
+                return;
+
+            logger.info("Disconnecting blocked change feed client " + exchange.getRemoteAddress());
+            dropped = true;
+            clients.remove(this);
+            synchronized (this) {
+                // unless the write has returned in the meantime
+                if (writeStartedNanos != 0)
+                    replaced = addReplacementThread();
+            }
+        }
+
+        /**
+         * Records that the write in progress has returned, removing the delivery thread added in its place.
+         */
+        private synchronized void written() {
+            writeStartedNanos = 0;
+            if (replaced) {
+                replaced = false;
+                removeReplacementThread();
+            }
+        }
+
+        private void deliver() {
+            if (writing.compareAndSet(false, true))
+                delivery.execute(this::write);
+        }
+
+        /**
+         * Writes the queued events, then closes the exchange if the client has been dropped. Left writing once the
+         * exchange is closed, so that nothing is written after it.
+         */
+        private void write() {
+            do {
+                try {
+                    List<byte[]> frames = new ArrayList<>();
+                    while (!dropped && queue.drainTo(frames) != 0) {
+                        writeStartedNanos = System.nanoTime();
+                        for (byte[] frame : frames)
+                            out.write(frame);
+                        frames.clear();
+                    }
+                    writeStartedNanos = System.nanoTime();
+                    out.flush();
+                } catch (IOException e) {
+                    // the client has disconnected
+                    dropped = true;
+                    clients.remove(this);
+                }
+
+                if (dropped) {
+                    // closing writes the end of the stream, which may block as well
+                    writeStartedNanos = System.nanoTime();
+                    try {
+                        exchange.close();
+                    } finally {
+                        written();
+                        open.remove(this);
+                    }
+                    return;
+                }
+                written();
+                writing.set(false);
+            } while ((!queue.isEmpty() || dropped) && writing.compareAndSet(false, true));
+        }
+    }
+}
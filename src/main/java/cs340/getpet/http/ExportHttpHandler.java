@@ -0,0 +1,178 @@
+package cs340.getpet.http;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cs340.getpet.http.rest.ContentEncoding;
+import cs340.getpet.persistence.Animal;
+import cs340.getpet.persistence.Color;
+import cs340.getpet.persistence.Persistence;
+import cs340.getpet.persistence.Persistence.PersistenceException;
+
+/**
+ * HTTP handler that exports every animal in the database, for reporting.
+ * <p>
+ * {@code /export/animals.ndjson} writes one JSON animal per line, and {@code /export/animals.csv} writes a header
+ * row followed by one row per animal, with the colors of an animal separated by semicolons. Rows are written to the
+ * client a chunk at a time as they are read from the database, compressed on the fly with the coding that the client
+ * prefers, so an export of any size uses a constant amount of memory.
+ */
+public class ExportHttpHandler implements HttpHandler {
+    private static final Logger logger = LoggerFactory.getLogger(ExportHttpHandler.class);
+
+    private static final String CSV_HEADER = "intakeNumber,cageNumber,species,breed,size,colors,gender,weight,vaccinated,spayNeuter,name,missing";
+
+    private final Persistence persistence;
+
+    public ExportHttpHandler(Persistence persistence) {
+        this.persistence = persistence;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        final String requestPath = exchange.getRequestURI().getPath();
+        // a failed export leaves the exchange open, so that the server resets the connection instead of ending it
+        boolean abandoned = false;
+
+        try {
+            final boolean csv;
+            if (requestPath.equals("/export/animals.ndjson"))
+                csv = false;
+            else if (requestPath.equals("/export/animals.csv"))
+                csv = true;
+            else {
+                exchange.sendResponseHeaders(404, -1);
+                logger.info("HTTP 404: " + requestPath);
+                return;
+            }
+
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                logger.info("HTTP 405: " + requestPath);
+                return;
+            }
+
+            final ContentEncoding encoding = ContentEncoding.negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+
+            exchange.getResponseHeaders().set("Content-Type", csv ? "text/csv; charset=utf-8" : "application/x-ndjson; charset=utf-8");
+            exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"animals." + (csv ? "csv" : "ndjson") + "\"");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            if (encoding != null)
+                exchange.getResponseHeaders().set("Content-Encoding", encoding.token);
+
+            // the length is unknown until every row has been written, so the response is chunked
+            exchange.sendResponseHeaders(200, 0);
+            logger.info("HTTP 200: " + requestPath);
+
+            OutputStream body = exchange.getResponseBody();
+            final Deflater deflater = encoding != null ? encoding.deflater() : null;
+            if (encoding != null)
+                body = encoding.compress(body, deflater);
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+            try {
+                int count;
+                if (csv) {
+                    writer.write(CSV_HEADER);
+                    writer.write("\r\n");
+                    count = persistence.exportAnimals(animal -> writeCsv(writer, animal));
+                } else {
+                    // one lenient writer writes every line, since each line is a top-level value
+                    final TypeAdapter<Animal> adapter = Json.GSON.getAdapter(Animal.class);
+                    final JsonWriter json = Json.GSON.newJsonWriter(writer);
+                    json.setLenient(true);
+                    count = persistence.exportAnimals(animal -> {
+                        adapter.write(json, animal);
+                        writer.write('\n');
+                    });
+                }
+                // only a complete export is finished, with the compressed stream's trailer and the last chunk
+                writer.close();
+                logger.info("Exported " + count + " animals");
+            } catch (PersistenceException e) {
+                // the status has already been sent, so the body is left unfinished for the client to see it fail
+                logger.error("Failed to export animals", e);
+                abandoned = true;
+                throw new IOException("Failed to export animals", e);
+            } catch (IOException | RuntimeException e) {
+                abandoned = true;
+                throw e;
+            } finally {
+                if (deflater != null)
+                    encoding.release(deflater);
+            }
+        } finally {
+            if (!abandoned)
+                exchange.close();
+        }
+    }
+
+    private static void writeCsv(Writer writer, Animal animal) throws IOException {
+        StringBuilder colors = new StringBuilder();
+        for (Color color : animal.colors) {
+            if (colors.length() != 0)
+                colors.append(';');
+            colors.append(color);
+        }
+
+        writer.write(Integer.toString(animal.intakeNumber));
+        writer.write(',');
+        writer.write(Integer.toString(animal.cageNumber));
+        writer.write(',');
+        writer.write(animal.species.toString());
+        writer.write(',');
+        writeCsvField(writer, animal.breed);
+        writer.write(',');
+        writer.write(animal.size.toString());
+        writer.write(',');
+        writer.write(colors.toString());
+        writer.write(',');
+        writer.write(animal.gender.toString());
+        writer.write(',');
+        writer.write(Double.toString(animal.weight));
+        writer.write(',');
+        writer.write(Boolean.toString(animal.vaccinated));
+        writer.write(',');
+        writer.write(Boolean.toString(animal.spayNeuter));
+        writer.write(',');
+        writeCsvField(writer, animal.name);
+        writer.write(',');
+        writer.write(Boolean.toString(animal.missing));
+        writer.write("\r\n");
+    }
+
+    /**
+     * Writes a free-text field, quoting it as per RFC 4180 if it contains a separator, quote or line break.
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null)
+            return;
+
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; ++i) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+
+        if (quote) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else
+            writer.write(value);
+    }
+}
@@ -0,0 +1,147 @@
+package cs340.getpet.http;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import cs340.getpet.http.rest.ErrorResponse;
+import cs340.getpet.persistence.Animal;
+import cs340.getpet.persistence.Cage;
+import cs340.getpet.persistence.JsonAdapters;
+import cs340.getpet.persistence.SearchQuery;
+
+/**
+ * The Gson instance shared by the HTTP handlers.
+ * <p>
+ * Every type that is sent or received has a streaming type adapter registered, so requests and responses are read
+ * and written without reflection. The request and response bodies wrapping a single value are read and written
+ * through the adapter of that value. HTML escaping is disabled, since responses are only ever served as JSON.
+ */
+final class Json {
+    static final Gson GSON = new GsonBuilder()
+            .disableHtmlEscaping()
+            .registerTypeAdapter(Animal.class, JsonAdapters.ANIMAL)
+            .registerTypeAdapter(SearchQuery.class, JsonAdapters.SEARCH_QUERY)
+            .registerTypeAdapter(Cage.class, JsonAdapters.CAGE)
+            .registerTypeAdapter(AnimalBulkNewResponse.Result.class, new BulkResultAdapter())
+            .registerTypeAdapterFactory(wrapper(AnimalSearchRequest.class, "query", SearchQuery.class, AnimalSearchRequest::new, req -> req.query))
+            .registerTypeAdapterFactory(wrapper(AnimalNewRequest.class, "animal", Animal.class, AnimalNewRequest::new, req -> req.animal))
+            .registerTypeAdapterFactory(wrapper(AnimalPutRequest.class, "animal", Animal.class, AnimalPutRequest::new, req -> req.animal))
+            .registerTypeAdapterFactory(wrapper(AnimalBulkNewRequest.class, "animals", Animal[].class, AnimalBulkNewRequest::new, req -> req.animals))
+            .registerTypeAdapterFactory(wrapper(CagesGetResponse.class, "cages", Cage[].class, CagesGetResponse::new, resp -> resp.cages))
+            .registerTypeAdapterFactory(wrapper(AnimalGetResponse.class, "animal", Animal.class, AnimalGetResponse::new, resp -> resp.animal))
+            .registerTypeAdapterFactory(wrapper(BreedsGetResponse.class, "breeds", String[].class, BreedsGetResponse::new, resp -> resp.breeds))
+            .registerTypeAdapterFactory(wrapper(AnimalBulkNewResponse.class, "results", AnimalBulkNewResponse.Result[].class, AnimalBulkNewResponse::new, resp -> resp.results))
+            .registerTypeAdapterFactory(wrapper(ErrorResponse.class, "message", String.class, ErrorResponse::new, resp -> resp.message))
+            .create();
+
+    private Json() {}
+
+    /**
+     * Creates a factory for the adapter of a type that is a JSON object with a single field, which is read and
+     * written through the adapter of the field's type. Other fields are skipped when reading.
+     */
+    private static <W, T> TypeAdapterFactory wrapper(Class<W> type, String name, Class<T> valueType, Function<T, W> wrap, Function<W, T> unwrap) {
+        return new TypeAdapterFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <A> TypeAdapter<A> create(Gson gson, TypeToken<A> typeToken) {
+                if (typeToken.getRawType() != type)
+                    return null;
+
+                final TypeAdapter<T> valueAdapter = gson.getAdapter(valueType);
+                return (TypeAdapter<A>) new TypeAdapter<W>() {
+                    @Override
+                    public void write(JsonWriter out, W wrapper) throws IOException {
+                        if (wrapper == null) {
+                            out.nullValue();
+                            return;
+                        }
+
+                        out.beginObject();
+                        T value = unwrap.apply(wrapper);
+                        if (value != null) {
+                            out.name(name);
+                            valueAdapter.write(out, value);
+                        }
+                        out.endObject();
+                    }
+
+                    @Override
+                    public W read(JsonReader in) throws IOException {
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            return null;
+                        }
+
+                        T value = null;
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            if (in.nextName().equals(name))
+                                value = valueAdapter.read(in);
+                            else
+                                in.skipValue();
+                        }
+                        in.endObject();
+                        return wrap.apply(value);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Reads and writes the outcome of adding an animal in bulk, leaving out whichever of the intake number and the
+     * error is absent.
+     */
+    private static final class BulkResultAdapter extends TypeAdapter<AnimalBulkNewResponse.Result> {
+        @Override
+        public void write(JsonWriter out, AnimalBulkNewResponse.Result result) throws IOException {
+            if (result == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (result.intakeNumber != null)
+                out.name("intakeNumber").value(result.intakeNumber.intValue());
+            if (result.error != null)
+                out.name("error").value(result.error);
+            out.endObject();
+        }
+
+        @Override
+        public AnimalBulkNewResponse.Result read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Integer intakeNumber = null;
+            String error = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "intakeNumber": intakeNumber = in.nextInt(); break;
+                    case "error": error = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new AnimalBulkNewResponse.Result(intakeNumber, error);
+        }
+    }
+}
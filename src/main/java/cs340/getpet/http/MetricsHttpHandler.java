@@ -0,0 +1,99 @@
+package cs340.getpet.http;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import cs340.getpet.persistence.CacheStats;
+import cs340.getpet.persistence.Persistence;
+import cs340.getpet.persistence.QueryStats;
+
+/**
+ * HTTP handler that serves the {@link RequestMetrics} of the server at {@code /metrics}, in the Prometheus text
+ * format, followed by the operation timings and cache counters of the database.
+ */
+public class MetricsHttpHandler implements HttpHandler {
+    private final RequestMetrics metrics;
+    private final Persistence persistence;
+
+    public MetricsHttpHandler(RequestMetrics metrics, Persistence persistence) {
+        this.metrics = metrics;
+        this.persistence = persistence;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestURI().getPath().equals("/metrics")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+                metrics.writePrometheus(writer);
+                writePersistence(writer);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writePersistence(Writer writer) throws IOException {
+        QueryStats[] operations = persistence.getQueryStats();
+
+        writer.write("# HELP getpet_db_operations_total Database operations completed.\n");
+        writer.write("# TYPE getpet_db_operations_total counter\n");
+        for (QueryStats stats : operations)
+            writer.write("getpet_db_operations_total{operation=\"" + stats.operation + "\"} " + stats.count + "\n");
+
+        writer.write("# HELP getpet_db_slow_operations_total Database operations that took at least the slow query threshold.\n");
+        writer.write("# TYPE getpet_db_slow_operations_total counter\n");
+        for (QueryStats stats : operations)
+            writer.write("getpet_db_slow_operations_total{operation=\"" + stats.operation + "\"} " + stats.slowCount + "\n");
+
+        writer.write("# HELP getpet_db_rows_total Rows read or written by database operations.\n");
+        writer.write("# TYPE getpet_db_rows_total counter\n");
+        for (QueryStats stats : operations)
+            writer.write("getpet_db_rows_total{operation=\"" + stats.operation + "\"} " + stats.rows + "\n");
+
+        writer.write("# HELP getpet_db_operation_seconds_total Time spent in database operations, by phase.\n");
+        writer.write("# TYPE getpet_db_operation_seconds_total counter\n");
+        for (QueryStats stats : operations) {
+            writer.write("getpet_db_operation_seconds_total{operation=\"" + stats.operation + "\",phase=\"prepare\"} " + stats.prepareNanos / 1e9 + "\n");
+            writer.write("getpet_db_operation_seconds_total{operation=\"" + stats.operation + "\",phase=\"execute\"} " + stats.executeNanos / 1e9 + "\n");
+            writer.write("getpet_db_operation_seconds_total{operation=\"" + stats.operation + "\",phase=\"decode\"} " + stats.decodeNanos / 1e9 + "\n");
+        }
+
+        writer.write("# HELP getpet_db_operation_max_seconds The longest time taken by a database operation.\n");
+        writer.write("# TYPE getpet_db_operation_max_seconds gauge\n");
+        for (QueryStats stats : operations)
+            writer.write("getpet_db_operation_max_seconds{operation=\"" + stats.operation + "\"} " + stats.maxNanos / 1e9 + "\n");
+
+        CacheStats[] caches = { persistence.getStatementCacheStats(), persistence.getAnimalCacheStats(), persistence.getSearchCacheStats() };
+        String[] names = { "statement", "animal", "search" };
+        writer.write("# HELP getpet_cache_lookups_total Cache lookups, by result.\n");
+        writer.write("# TYPE getpet_cache_lookups_total counter\n");
+        for (int i = 0; i < caches.length; ++i) {
+            writer.write("getpet_cache_lookups_total{cache=\"" + names[i] + "\",result=\"hit\"} " + caches[i].hits + "\n");
+            writer.write("getpet_cache_lookups_total{cache=\"" + names[i] + "\",result=\"miss\"} " + caches[i].misses + "\n");
+        }
+        writer.write("# HELP getpet_cache_evictions_total Entries removed to keep caches within their bounds.\n");
+        writer.write("# TYPE getpet_cache_evictions_total counter\n");
+        for (int i = 0; i < caches.length; ++i)
+            writer.write("getpet_cache_evictions_total{cache=\"" + names[i] + "\"} " + caches[i].evictions + "\n");
+    }
+}
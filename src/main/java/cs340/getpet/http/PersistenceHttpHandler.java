@@ -1,5 +1,8 @@
 package cs340.getpet.http;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import cs340.getpet.http.rest.Endpoint;
 import cs340.getpet.http.rest.RequestBody;
 import cs340.getpet.http.rest.Response;
@@ -7,20 +10,23 @@ import cs340.getpet.http.rest.ResponseBody;
 import cs340.getpet.http.rest.RestException;
 import cs340.getpet.http.rest.RestHttpHandler;
 import cs340.getpet.http.rest.ValidationException;
-import cs340.getpet.http.rest.Validator;
 import cs340.getpet.http.rest.ResponseBody.EmptyResponse;
 import cs340.getpet.persistence.Animal;
-import cs340.getpet.persistence.Cage;
 import cs340.getpet.persistence.Persistence;
+import cs340.getpet.persistence.SearchCursor;
 import cs340.getpet.persistence.SearchQuery;
 import cs340.getpet.persistence.Persistence.PersistenceException;
 
 public class PersistenceHttpHandler extends RestHttpHandler {
+    private static final int BREED_SUGGESTION_LIMIT = 10;
+    static final int MAX_BULK_ANIMALS = 1000;
+
     private final Persistence persistence;
 
     public PersistenceHttpHandler(Persistence persistence) {
         super(
             "/persistence",
+            Json.GSON,
             new Endpoint.Builder()
                 .path("/cages")
                 .get(CagesGetResponse.class, (req) -> {
@@ -34,8 +40,29 @@ public class PersistenceHttpHandler extends RestHttpHandler {
             new Endpoint.Builder()
                 .path("/search")
                 .post(AnimalSearchRequest.class, AnimalSearchResponse.class, (req) -> {
+                    SearchQuery query = req.body.query;
+                    Animal[] results;
+                    try {
+                        results = persistence.search(query);
+                    } catch (PersistenceException e) {
+                        throw new RestException(RestException.Code.INTERNAL, e);
+                    }
+
+                    // only a full page can be followed by another one
+                    String next = null;
+                    if (results.length != 0 && results.length == persistence.getPageSize(query))
+                        next = SearchCursor.after(query.sortOrDefault(), results[results.length - 1]);
+                    return Response.withBody(200, new AnimalSearchResponse(results, next));
+                })
+                .build(),
+            new Endpoint.Builder()
+                .path("/breeds/{fragment}")
+                .get(BreedsGetResponse.class, (req) -> {
+                    String fragment = req.pathVariables.get("fragment");
+                    if (!fragment.matches("^[a-zA-Z ]{1,50}$"))
+                        throw new RestException(RestException.Code.INVALID_PATH_PARAMETER);
                     try {
-                        return Response.withBody(200, new AnimalSearchResponse(persistence.search(req.body.query)));
+                        return Response.withBody(200, new BreedsGetResponse(persistence.suggestBreeds(fragment, BREED_SUGGESTION_LIMIT)));
                     } catch (PersistenceException e) {
                         throw new RestException(RestException.Code.INTERNAL, e);
                     }
@@ -52,6 +79,32 @@ public class PersistenceHttpHandler extends RestHttpHandler {
                     }
                 })
                 .build(),
+            new Endpoint.Builder()
+                .path("/animal/bulk")
+                .post(AnimalBulkNewRequest.class, AnimalBulkNewResponse.class, (req) -> {
+                    // validate every animal, so that the valid ones are added and each invalid one is reported
+                    AnimalBulkNewResponse.Result[] results = new AnimalBulkNewResponse.Result[req.body.animals.length];
+                    List<Animal> valid = new ArrayList<>();
+                    for (int i = 0; i < results.length; ++i) {
+                        try {
+                            AnimalNewRequest.validate(req.body.animals[i]);
+                            valid.add(req.body.animals[i]);
+                        } catch (ValidationException e) {
+                            results[i] = AnimalBulkNewResponse.Result.error(e.getMessage());
+                        }
+                    }
+
+                    try {
+                        int[] intakeNumbers = persistence.newAnimals(valid);
+                        for (int i = 0, j = 0; i < results.length; ++i)
+                            if (results[i] == null)
+                                results[i] = AnimalBulkNewResponse.Result.added(intakeNumbers[j++]);
+                        return Response.withBody(200, new AnimalBulkNewResponse(results));
+                    } catch (PersistenceException e) {
+                        throw new RestException(RestException.Code.INTERNAL, e);
+                    }
+                })
+                .build(),
             new Endpoint.Builder()
                 .path("/animal/{intakeNumber}")
                 .get(AnimalGetResponse.class, (req) -> {
@@ -92,91 +145,3 @@ public class PersistenceHttpHandler extends RestHttpHandler {
         this.persistence = persistence;
     }
 }
-
-final class AnimalSearchRequest implements RequestBody {
-    public final SearchQuery query;
-
-    AnimalSearchRequest(SearchQuery query) {
-        this.query = query;
-    }
-
-    @Override
-    public void validate() throws ValidationException {
-        Validator.assertNonNull(query, "Query must not be null");
-        Validator.assertMatches(query.breed, "^[a-zA-Z ]{0,50}$", "Breed must be alphabetic and 50 characters or less.");
-        if (query.cageNumber != null)
-            Validator.assertFalse(query.cageNumber < 0, "Cage number cannot be negative");
-    }
-}
-
-final class AnimalNewRequest implements RequestBody {
-    public final Animal animal;
-
-    AnimalNewRequest(Animal animal) {
-        this.animal = animal;
-    }
-
-    @Override
-    public void validate() throws ValidationException {
-        Validator.assertNonNull(animal, "Animal must not be null");
-        Validator.assertNull(animal.intakeNumber, "Animal must not contain an intake number; those are auto-assigned");
-        Validator.assertFalse(animal.cageNumber < 0, "Cage number cannot be negative");
-        Validator.assertNonNull(animal.species, "Animal must have species");
-        Validator.assertNonNull(animal.breed, "Animal must have breed");
-        Validator.assertMatches(animal.breed, "^[a-zA-Z ]{1,50}$", "Animal breed must be alphabetic and <= 50 characters");
-        Validator.assertNonNull(animal.size, "Animal must have size");
-        Validator.assertNonNull(animal.colors, "Animal must have one or more color");
-        Validator.assertFalse(animal.colors.length == 0, "Animal must have one or more color");
-        Validator.assertNonNull(animal.gender, "Animal must have gender");
-        Validator.assertTrue(animal.weight >= 1.0 && animal.weight <= 250.0, "Animal weight must be between 1 and 250 lbs.");
-        Validator.assertMatches(animal.name, "^[a-zA-Z ]{1,50}$", "Animal name must be alphabetic and <= 50 characters");
-    }
-}
-
-final class AnimalPutRequest implements RequestBody {
-    public final Animal animal;
-
-    AnimalPutRequest(Animal animal) {
-        this.animal = animal;
-    }
-
-    @Override
-    public void validate() throws ValidationException {
-        Validator.assertNonNull(animal, "Animal must not be null");
-        Validator.assertNull(animal.intakeNumber, "Animal intake number cannot be changed");
-        Validator.assertFalse(animal.cageNumber < 0, "Cage number cannot be negative");
-        Validator.assertNonNull(animal.species, "Animal must have species");
-        Validator.assertNonNull(animal.breed, "Animal must have breed");
-        Validator.assertMatches(animal.breed, "^[a-zA-Z ]{1,50}$", "Animal breed must be alphabetic and <= 50 characters");
-        Validator.assertNonNull(animal.size, "Animal must have size");
-        Validator.assertNonNull(animal.colors, "Animal must have one or more color");
-        Validator.assertFalse(animal.colors.length == 0, "Animal must have one or more color");
-        Validator.assertNonNull(animal.gender, "Animal must have gender");
-        Validator.assertTrue(animal.weight >= 1.0 && animal.weight <= 250.0, "Animal weight must be between 1 and 250 lbs.");
-        Validator.assertMatches(animal.name, "^[a-zA-Z ]{1,50}$", "Animal name must be alphabetic and <= 50 characters");
-    }
-}
-
-final class CagesGetResponse implements ResponseBody {
-    public final Cage[] cages;
-
-    CagesGetResponse(Cage[] cages) {
-        this.cages = cages;
-    }
-}
-
-final class AnimalSearchResponse implements ResponseBody {
-    public final Animal[] results;
-
-    AnimalSearchResponse(Animal[] results) {
-        this.results = results;
-    }
-}
-
-final class AnimalGetResponse implements ResponseBody {
-    public final Animal animal;
-
-    AnimalGetResponse(Animal animal) {
-        this.animal = animal;
-    }
-}
\ No newline at end of file
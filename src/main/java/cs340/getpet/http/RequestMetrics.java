@@ -0,0 +1,232 @@
+package cs340.getpet.http;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import cs340.getpet.http.rest.RestHttpHandler;
+import cs340.getpet.util.Histogram;
+
+/**
+ * Records the latency, request and response sizes, and status codes of the requests handled by each route and
+ * method, and writes them in the Prometheus text format.
+ * <p>
+ * The {@link #filter(String)} installed on each context does the recording. REST handlers name the endpoint that
+ * handled a request through {@link RestHttpHandler#takeRoute()}, so requests are grouped by path pattern, e.g.
+ * {@code /persistence/animal/{intakeNumber}}; other requests are grouped by their context path.
+ * Recording a request takes two map lookups and a few counter increments, so metrics are always on.
+ */
+public final class RequestMetrics {
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS");
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    /**
+     * Every series, sorted by route and then method so that they are written in a stable order.
+     */
+    private final ConcurrentSkipListMap<String, Series> series = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param contextPath the path of the context that the filter is installed on
+     * @return a filter that records the requests of the context
+     */
+    public Filter filter(String contextPath) {
+        // series by route, then by method
+        final ConcurrentMap<String, ConcurrentMap<String, Series>> routes = new ConcurrentHashMap<>();
+
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                final long start = System.nanoTime();
+                final CountingInputStream requestBody = new CountingInputStream(exchange.getRequestBody());
+                final CountingOutputStream responseBody = new CountingOutputStream(exchange.getResponseBody());
+                exchange.setStreams(requestBody, responseBody);
+
+                boolean failed = true;
+                try {
+                    chain.doFilter(exchange);
+                    failed = false;
+                } finally {
+                    String route = RestHttpHandler.takeRoute();
+                    String method = exchange.getRequestMethod();
+                    Series series = routes
+                            .computeIfAbsent(route != null ? route : "", r -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(METHODS.contains(method) ? method : "other",
+                                    m -> series(contextPath + (route != null ? route : ""), m));
+
+                    // an exchange that failed before sending a response is reset, which the client sees as an error
+                    int code = exchange.getResponseCode();
+                    series.record(System.nanoTime() - start, requestBody.count, responseBody.count,
+                            code == -1 && failed ? 500 : code);
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Records request metrics";
+            }
+        };
+    }
+
+    private Series series(String route, String method) {
+        return series.computeIfAbsent(route + ' ' + method, key -> new Series(route, method));
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format, version 0.0.4.
+     *
+     * @param writer the writer
+     * @throws IOException when writing fails
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        writer.write("# HELP getpet_http_request_duration_seconds Time from receiving a request to finishing its response.\n");
+        writer.write("# TYPE getpet_http_request_duration_seconds summary\n");
+        for (Series s : series.values()) {
+            Histogram.Snapshot latency = s.latencyMicros.snapshot();
+            for (double quantile : QUANTILES)
+                writeSample(writer, "getpet_http_request_duration_seconds", s, "quantile", Double.toString(quantile),
+                        seconds(latency.valueAt(quantile)));
+            writeSample(writer, "getpet_http_request_duration_seconds_sum", s, null, null, seconds(latency.sum));
+            writeSample(writer, "getpet_http_request_duration_seconds_count", s, null, null, Long.toString(latency.count));
+        }
+
+        writer.write("# HELP getpet_http_request_duration_max_seconds The longest time taken by a request.\n");
+        writer.write("# TYPE getpet_http_request_duration_max_seconds gauge\n");
+        for (Series s : series.values())
+            writeSample(writer, "getpet_http_request_duration_max_seconds", s, null, null, seconds(s.latencyMicros.snapshot().max));
+
+        writer.write("# HELP getpet_http_requests_total Requests handled, by response status code.\n");
+        writer.write("# TYPE getpet_http_requests_total counter\n");
+        for (Series s : series.values())
+            for (int code = 0; code < s.codes.length(); ++code) {
+                long count = s.codes.get(code);
+                if (count != 0)
+                    writeSample(writer, "getpet_http_requests_total", s, "code", Integer.toString(code), Long.toString(count));
+            }
+
+        writer.write("# HELP getpet_http_request_bytes_total Bytes read from request bodies.\n");
+        writer.write("# TYPE getpet_http_request_bytes_total counter\n");
+        for (Series s : series.values())
+            writeSample(writer, "getpet_http_request_bytes_total", s, null, null, Long.toString(s.requestBytes.sum()));
+
+        writer.write("# HELP getpet_http_response_bytes_total Bytes written to response bodies, after content encoding and before transfer encoding.\n");
+        writer.write("# TYPE getpet_http_response_bytes_total counter\n");
+        for (Series s : series.values())
+            writeSample(writer, "getpet_http_response_bytes_total", s, null, null, Long.toString(s.responseBytes.sum()));
+    }
+
+    private static void writeSample(Writer writer, String name, Series s, String label, String labelValue, String value) throws IOException {
+        writer.write(name);
+        writer.write("{route=\"");
+        writer.write(escapeLabel(s.route));
+        writer.write("\",method=\"");
+        writer.write(s.method);
+        if (label != null) {
+            writer.write("\",");
+            writer.write(label);
+            writer.write("=\"");
+            writer.write(labelValue);
+        }
+        writer.write("\"} ");
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1e6);
+    }
+
+    /**
+     * The metrics of one route and method.
+     */
+    private static final class Series {
+        final String route;
+        final String method;
+        final Histogram latencyMicros = new Histogram();
+        final LongAdder requestBytes = new LongAdder();
+        final LongAdder responseBytes = new LongAdder();
+        /**
+         * The number of responses by status code, where any code outside 100-599 is counted as 0.
+         */
+        final AtomicLongArray codes = new AtomicLongArray(600);
+
+        Series(String route, String method) {
+            this.route = route;
+            this.method = method;
+        }
+
+        void record(long nanos, long requestBytes, long responseBytes, int code) {
+            latencyMicros.record(nanos / 1000);
+            this.requestBytes.add(requestBytes);
+            this.responseBytes.add(responseBytes);
+            codes.incrementAndGet(code >= 100 && code < codes.length() ? code : 0);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1)
+                ++count;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // FilterOutputStream would write the bytes one at a time
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cs340.getpet.http;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
@@ -7,44 +8,107 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import cs340.getpet.http.rest.ContentEncoding;
 
 /**
  * HTTP handler that handles the serving of static files located in the JAR's resources.
+ * <p>
+ * Every file is read into memory when the handler is created, along with a gzipped copy for files that compress
+ * well, so serving a file never touches the JAR. Responses carry a Content-Type, a strong ETag for conditional
+ * requests, and {@code Cache-Control: no-cache}. None of the file names carry a hash of their contents, so a
+ * browser caching a script or stylesheet without revalidating would keep serving it after a deploy; revalidating
+ * costs a 304 without a body instead.
  */
 public class StaticHttpHandler implements HttpHandler {
     private static final Logger logger = LoggerFactory.getLogger(StaticHttpHandler.class);
 
+    private static final String CONTENT_ROOT = "/content";
+    private static final String CACHE_CONTROL = "no-cache";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "css", "text/css; charset=utf-8",
+            "js", "text/javascript; charset=utf-8",
+            "json", "application/json; charset=utf-8",
+            "svg", "image/svg+xml",
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "ico", "image/x-icon");
+
     private final String homePage;
+    private final Map<String, Asset> assets;
 
-    public StaticHttpHandler(String homePage) {
+    /**
+     * @param homePage the path of the file to serve for "/", relative to the content directory
+     * @throws IOException when the files could not be read
+     */
+    public StaticHttpHandler(String homePage) throws IOException {
         this.homePage = homePage;
+        this.assets = loadAssets();
+
+        logger.info("Loaded " + assets.size() + " static files");
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         final String requestPath = exchange.getRequestURI().getPath();
+        final String method = exchange.getRequestMethod();
         final int responseCode;
-        
+
         try {
-            if (exchange.getRequestMethod().equals("GET")) {
-                final String resourcePath;
+            if (method.equals("GET") || method.equals("HEAD")) {
+                final Asset asset = assets.get(requestPath.equals("/") ? homePage : requestPath);
 
-                if (requestPath.equals("/"))
-                    resourcePath = "/content" + homePage;
-                else
-                    resourcePath = "/content" + requestPath;
+                if (asset != null) {
+                    final Headers requestHeaders = exchange.getRequestHeaders();
+                    final Headers responseHeaders = exchange.getResponseHeaders();
 
-                if (getClass().getResource(resourcePath) != null) {
-                    try (InputStream inStream = getClass().getResourceAsStream(resourcePath);
-                        OutputStream outStream = exchange.getResponseBody()) {
-                        // read file data
-                        byte[] data = inStream.readAllBytes();
+                    // pick the representation to send
+                    final String acceptEncoding = requestHeaders.getFirst("Accept-Encoding");
+                    final boolean gzip = asset.gzipped != null && ContentEncoding.GZIP.acceptedBy(acceptEncoding);
+                    final byte[] data = gzip ? asset.gzipped : asset.data;
+                    final String etag = gzip ? asset.gzippedEtag : asset.etag;
 
-                        // send headers
-                        exchange.sendResponseHeaders(responseCode = 200, data.length);
+                    responseHeaders.set("Content-Type", asset.contentType);
+                    responseHeaders.set("Cache-Control", CACHE_CONTROL);
+                    responseHeaders.set("ETag", etag);
+                    if (asset.gzipped != null)
+                        responseHeaders.set("Vary", "Accept-Encoding");
 
-                        // send data
-                        outStream.write(data);
+                    final String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+                    if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                        exchange.sendResponseHeaders(responseCode = 304, -1);
+                    } else {
+                        if (gzip)
+                            responseHeaders.set("Content-Encoding", "gzip");
+
+                        if (method.equals("HEAD")) {
+                            // HttpServer never sends a length of its own for HEAD, and warns when given one, so
+                            // the length of the body a GET would send goes in the header directly
+                            responseHeaders.set("Content-Length", Integer.toString(data.length));
+                            exchange.sendResponseHeaders(responseCode = 200, -1);
+                        } else {
+                            exchange.sendResponseHeaders(responseCode = 200, data.length);
+                            try (OutputStream outStream = exchange.getResponseBody()) {
+                                outStream.write(data);
+                            }
+                        }
                     }
                 } else
                     exchange.sendResponseHeaders(responseCode = 404, -1);
@@ -57,4 +121,87 @@ public class StaticHttpHandler implements HttpHandler {
             exchange.close();
         }
     }
+
+    /**
+     * Reads every file in the content directory of the resources.
+     *
+     * @return the files, keyed by their path relative to the content directory
+     * @throws IOException when a file could not be read
+     */
+    private Map<String, Asset> loadAssets() throws IOException {
+        final URI root;
+        try {
+            root = getClass().getResource(CONTENT_ROOT).toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid content directory location", e);
+        }
+
+        // resources packaged in a JAR are read through a zip file system
+        FileSystem jar = null;
+        if (root.getScheme().equals("jar")) {
+            try {
+                jar = FileSystems.newFileSystem(root, Map.of());
+            } catch (FileSystemAlreadyExistsException e) {
+                // already opened elsewhere, so Paths.get can use it
+            }
+        }
+
+        try (Stream<Path> files = Files.walk(Paths.get(root))) {
+            final Path rootPath = Paths.get(root);
+            final Map<String, Asset> assets = new HashMap<>();
+
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String path = "/" + rootPath.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                assets.put(path, new Asset(path, Files.readAllBytes(file)));
+            }
+
+            return Map.copyOf(assets);
+        } finally {
+            if (jar != null)
+                jar.close();
+        }
+    }
+
+    /**
+     * A file held in memory, ready to be served.
+     */
+    private static final class Asset {
+        final byte[] data;
+        final byte[] gzipped;
+        final String etag;
+        final String gzippedEtag;
+        final String contentType;
+
+        Asset(String path, byte[] data) throws IOException {
+            final String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase();
+
+            this.data = data;
+            this.contentType = CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+
+            // only keep the compressed copy when it saves a meaningful amount
+            byte[] compressed = gzip(data);
+            this.gzipped = compressed.length < data.length * 9 / 10 ? compressed : null;
+
+            String hash = hash(data);
+            this.etag = "\"" + hash + "\"";
+            this.gzippedEtag = "\"" + hash + "-gzip\"";
+        }
+
+        private static byte[] gzip(byte[] data) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(data);
+            }
+            return out.toByteArray();
+        }
+
+        private static String hash(byte[] data) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError("SHA-256 is always available", e);
+            }
+        }
+    }
 }
@@ -1,10 +1,7 @@
 package cs340.getpet.http.rest;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.StringJoiner;
 
 public final class Endpoint {
     final Path path;
@@ -14,57 +11,80 @@ public final class Endpoint {
     final MethodHandler<?, ?> deleteHandler;
 
     static final class Path {
-        private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{\\w+\\}");
-    
         public final String readablepath;
-    
-        private final Pattern pathPattern;
-        private final String[] pathVariables;
-    
+
+        /**
+         * The segments of the path between slashes, with null in place of each path variable.
+         */
+        final String[] segments;
+        /**
+         * The names of the path variables, in the order they appear in.
+         */
+        final String[] variableNames;
+        /**
+         * The index in {@link #segments} of each path variable.
+         */
+        final int[] variableSegments;
+
         public Path(final String path) {
+            if (!path.startsWith("/"))
+                throw new IllegalArgumentException("Endpoint path must start with '/': " + path);
+
             this.readablepath = path;
-    
-            ArrayList<String> pathVariables = new ArrayList<>();
-            final String pathPatternString = VARIABLE_PATTERN.matcher(path).replaceAll(match -> {
-                String matchGroup = match.group();
-                String variableName = matchGroup.substring(1, matchGroup.length() - 1);
-                pathVariables.add(variableName);
-    
-                return "(?<" + variableName + ">[^/\\?#]+)";
-            });
-    
-            this.pathPattern = Pattern.compile(pathPatternString);
-            this.pathVariables = pathVariables.toArray(new String[0]);
-        }
-    
-        public PathVariables match(final String path) {
-            final Matcher matcher = pathPattern.matcher(path);
-    
-            if (matcher.matches()) {
-                Map<String, String> variablesMap = new HashMap<>();
-    
-                for (String pathVariable : pathVariables)
-                    variablesMap.put(pathVariable, matcher.group(pathVariable));
-                
-                return new PathVariables(variablesMap);
-            } else return null;
+            this.segments = path.substring(1).split("/", -1);
+
+            ArrayList<String> variableNames = new ArrayList<>();
+            ArrayList<Integer> variableSegments = new ArrayList<>();
+            for (int i = 0; i < segments.length; ++i) {
+                String segment = segments[i];
+                if (segment.length() > 2 && segment.startsWith("{") && segment.endsWith("}")) {
+                    variableNames.add(segment.substring(1, segment.length() - 1));
+                    variableSegments.add(i);
+                    segments[i] = null;
+                }
+            }
+
+            this.variableNames = variableNames.toArray(new String[0]);
+            this.variableSegments = variableSegments.stream().mapToInt(Integer::intValue).toArray();
         }
     }
 
+    /**
+     * The values of the path variables of a request, which are only extracted from the path when asked for.
+     */
     public static final class PathVariables {
-        private final Map<String, String> variables;
-    
-        PathVariables(Map<String, String> variables) {
-            this.variables = variables;
+        static final PathVariables NONE = new PathVariables("", new String[0], new int[0]);
+
+        private final String path;
+        private final String[] names;
+        private final int[] bounds;
+
+        PathVariables(String path, String[] names, int[] bounds) {
+            this.path = path;
+            this.names = names;
+            this.bounds = bounds;
+        }
+
+        private int indexOf(String name) {
+            for (int i = 0; i < names.length; ++i)
+                if (names[i].equals(name))
+                    return i;
+            return -1;
         }
-    
+
         public String get(String s) {
-            return variables.get(s);
+            int i = indexOf(s);
+            return i == -1 ? null : path.substring(bounds[2 * i], bounds[2 * i + 1]);
         }
 
         public int getInt(String s) throws RestException {
+            int i = indexOf(s);
+            if (i == -1)
+                throw new RestException(RestException.Code.INVALID_PATH_PARAMETER);
+
             try {
-                return Integer.parseInt(get(s));
+                // parsed in place, without copying the variable out of the path
+                return Integer.parseInt(path, bounds[2 * i], bounds[2 * i + 1], 10);
             } catch (NumberFormatException e) {
                 throw new RestException(RestException.Code.INVALID_PATH_PARAMETER, e);
             }
@@ -130,6 +150,22 @@ public final class Endpoint {
         this.deleteHandler = b.deleteHandler;
     }
 
+    /**
+     * @return the methods that the endpoint has handlers for, formatted for an Allow header
+     */
+    String allowedMethods() {
+        StringJoiner methods = new StringJoiner(", ");
+        if (getHandler != null)
+            methods.add("GET");
+        if (postHandler != null)
+            methods.add("POST");
+        if (putHandler != null)
+            methods.add("PUT");
+        if (deleteHandler != null)
+            methods.add("DELETE");
+        return methods.toString();
+    }
+
     public MethodHandler<?, ?> getHandlerForMethod(String method) {
         switch (method) {
             case "GET":
@@ -0,0 +1,118 @@
+package cs340.getpet.http.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * The body of a response, which sends the response headers once it knows whether the body is worth compressing.
+ * <p>
+ * The start of the body is buffered up to a threshold. A body that ends within it is sent uncompressed with its
+ * length, as compressing it would save less than the compressed stream's own overhead; a longer one is sent with
+ * chunked transfer encoding, compressed with the negotiated coding if there is one.
+ */
+final class ResponseOutputStream extends OutputStream {
+    private final HttpExchange exchange;
+    private final int code;
+    private final ContentEncoding encoding;
+    private final byte[] buffer;
+    private int buffered;
+    private Deflater deflater;
+    /**
+     * The stream that the body is written to once the headers have been sent, or null until then.
+     */
+    private OutputStream out;
+
+    /**
+     * @param exchange the exchange to respond to, with every response header but the content encoding already set
+     * @param code the status code of the response
+     * @param encoding the coding to compress a long body with, or null to send it uncompressed
+     * @param threshold the length from which bodies are compressed
+     */
+    ResponseOutputStream(HttpExchange exchange, int code, ContentEncoding encoding, int threshold) {
+        this.exchange = exchange;
+        this.code = code;
+        this.encoding = encoding;
+        this.buffer = new byte[threshold];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out == null && buffered < buffer.length)
+            buffer[buffered++] = (byte) b;
+        else {
+            start();
+            out.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out == null && len <= buffer.length - buffered) {
+            System.arraycopy(b, off, buffer, buffered, len);
+            buffered += len;
+        } else {
+            start();
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Sends the headers for a body longer than the threshold, followed by what has been buffered.
+     */
+    private void start() throws IOException {
+        if (out != null)
+            return;
+
+        if (encoding != null)
+            exchange.getResponseHeaders().set("Content-Encoding", encoding.token);
+        exchange.sendResponseHeaders(code, 0);
+
+        out = exchange.getResponseBody();
+        if (encoding != null) {
+            deflater = encoding.deflater();
+            out = encoding.compress(out, deflater);
+        }
+        out.write(buffer, 0, buffered);
+    }
+
+    /**
+     * Flushes the body once the headers have been sent. Until then it does nothing, so that writers flushing their
+     * buffers do not end the buffering early.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out != null)
+            out.flush();
+    }
+
+    /**
+     * Sends the body, with its length if it is shorter than the threshold, and releases the Deflater.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (out == null) {
+                exchange.sendResponseHeaders(code, buffered == 0 ? -1 : buffered);
+                out = exchange.getResponseBody();
+                out.write(buffer, 0, buffered);
+            }
+            out.close();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Gives back the Deflater without finishing the body, e.g. when writing it failed. Closing the exchange then
+     * leaves the client with an incomplete response, or none if the headers have not been sent.
+     */
+    void release() {
+        if (deflater != null) {
+            encoding.release(deflater);
+            deflater = null;
+        }
+    }
+}
@@ -33,6 +33,7 @@ public class RestException extends Exception {
         public int httpResponseCode() {
             switch (this) {
                 case INVALID_METHOD:
+                    return 405;
                 case UNKNOWN_METHOD:
                 case INVALID_PATH_PARAMETER:
                 case INVALID_DATA:
@@ -1,12 +1,15 @@
 package cs340.getpet.http.rest;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
@@ -19,38 +22,71 @@ import cs340.getpet.http.rest.Endpoint.PathVariables;
 public abstract class RestHttpHandler implements HttpHandler {
     private static final Logger logger = LoggerFactory.getLogger(RestHttpHandler.class);
 
+    /**
+     * The path pattern of the endpoint handling the current thread's exchange. Exchange attributes cannot be used
+     * for this, since the JDK's HttpServer shares them between all exchanges of a context.
+     */
+    private static final ThreadLocal<String> ROUTE = new ThreadLocal<>();
+    /**
+     * The length of JSON from which responses are compressed; below it, compression saves less than it costs.
+     */
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
     private final String basePath;
-    private final Endpoint[] endpoints;
+    private final Router router;
     private final Gson gson;
 
     protected RestHttpHandler(String basePath, Endpoint... endpoints) {
+        this(basePath, new Gson(), endpoints);
+    }
+
+    /**
+     * @param basePath the path that the endpoint paths are relative to
+     * @param gson the Gson instance to read requests and write responses with, which should have type adapters
+     *             registered for the request and response bodies
+     * @param endpoints the endpoints
+     */
+    protected RestHttpHandler(String basePath, Gson gson, Endpoint... endpoints) {
         this.basePath = basePath;
-        this.endpoints = endpoints;
-        this.gson = new Gson();
+        this.router = new Router(endpoints);
+        this.gson = gson;
+    }
+
+    /**
+     * Takes the path pattern of the endpoint that handled the last exchange on the current thread, for filters that
+     * group exchanges by endpoint.
+     *
+     * @return the path pattern relative to the base path, e.g. {@code /animal/{intakeNumber}}, or null if no
+     *         endpoint matched or the exchange was not handled by a RestHttpHandler
+     */
+    public static String takeRoute() {
+        String route = ROUTE.get();
+        ROUTE.remove();
+        return route;
     }
 
     @Override
     public final void handle(HttpExchange exchange) throws IOException {
+        ROUTE.remove();
         final String endpointPath = exchange.getRequestURI().getPath().substring(basePath.length());
 
         // find endpoint with which to handle the exchange
-        PathVariables pathMatch = null;
-        MethodHandler<?, ?> requestHandler = null;
-        for (Endpoint endpoint : endpoints) {
-            pathMatch = endpoint.path.match(endpointPath);
-            requestHandler = endpoint.getHandlerForMethod(exchange.getRequestMethod());
-
-            if (pathMatch != null)
-                break;
-        }
+        final Router.Route route = router.route(endpointPath);
 
         // generate the response
         Response<?> resp;
         try (InputStreamReader body = new InputStreamReader(exchange.getRequestBody())) {
-            if (pathMatch == null)
+            if (route == null)
                 throw new RestException(RestException.Code.NOT_FOUND);
+            ROUTE.set(route.endpoint.path.readablepath);
+
+            MethodHandler<?, ?> requestHandler = route.endpoint.getHandlerForMethod(exchange.getRequestMethod());
+            if (requestHandler == null) {
+                exchange.getResponseHeaders().set("Allow", route.endpoint.allowedMethods());
+                throw new RestException(RestException.Code.INVALID_METHOD);
+            }
 
-            resp = handleAndValidateRequest(pathMatch, body, requestHandler);
+            resp = handleAndValidateRequest(route.pathVariables, body, requestHandler);
         } catch (RestException e) {
             if (e.code == RestException.Code.INTERNAL)
                 // Something went wrong but the code is handling it properly
@@ -67,13 +103,25 @@ public abstract class RestHttpHandler implements HttpHandler {
             throw e;
         }
 
-        // send the response
+        // send the response, serializing the body straight to the client, compressed if it is long enough and the
+        // client accepts it
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        final ResponseOutputStream responseBody = new ResponseOutputStream(exchange, resp.code,
+                ContentEncoding.negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding")), COMPRESSION_THRESHOLD);
         try {
-            String json = gson.toJson(resp.body);
-
-            exchange.sendResponseHeaders(resp.code, json.length() == 0 ? -1 : json.length());
-            exchange.getResponseBody().write(json.getBytes(StandardCharsets.UTF_8));
+            JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(responseBody, StandardCharsets.UTF_8)));
+            if (resp.body instanceof StreamingResponseBody)
+                ((StreamingResponseBody) resp.body).write(writer, gson);
+            else
+                gson.toJson(resp.body, resp.body.getClass(), writer);
+            // only closed once the body is complete, so that a failure is not sent as a complete response
+            writer.close();
+        } catch (IOException e) {
+            logger.error("Failed to send response", e);
+            throw e;
         } finally {
+            responseBody.release();
             exchange.close();
         }
     }
@@ -0,0 +1,154 @@
+package cs340.getpet.http.rest;
+
+import java.util.Arrays;
+
+import cs340.getpet.http.rest.Endpoint.PathVariables;
+
+/**
+ * Finds the endpoint for a request path using a trie of path segments built from the endpoints' paths.
+ * <p>
+ * Routing walks the request path one segment at a time, comparing each segment in place against the literal
+ * segments of the trie, so it takes time proportional to the number of segments and allocates nothing until an
+ * endpoint with path variables matches. Literal segments take precedence over variables, e.g. {@code /animal/new}
+ * is preferred over {@code /animal/{intakeNumber}}.
+ */
+final class Router {
+    private final Node root = new Node();
+
+    /**
+     * @param endpoints the endpoints to route to
+     * @throws IllegalArgumentException when two endpoints have the same path
+     */
+    Router(Endpoint[] endpoints) {
+        for (Endpoint endpoint : endpoints) {
+            Node node = root;
+            for (String segment : endpoint.path.segments)
+                node = segment == null ? node.variableChild() : node.literalChild(segment);
+
+            if (node.endpoint != null)
+                throw new IllegalArgumentException("Duplicate endpoint path " + endpoint.path.readablepath);
+            node.endpoint = endpoint;
+            node.route = endpoint.path.variableNames.length == 0
+                    ? new Route(endpoint, PathVariables.NONE)
+                    : null;
+        }
+    }
+
+    /**
+     * Finds the endpoint that a path belongs to.
+     *
+     * @param path the path, relative to the base path of the handler
+     * @return the endpoint and the values of its path variables, or null if no endpoint matches
+     */
+    Route route(String path) {
+        if (path.isEmpty() || path.charAt(0) != '/')
+            return null;
+
+        Node node = find(root, path, 1);
+        if (node == null)
+            return null;
+        else if (node.route != null)
+            return node.route;
+        else
+            return new Route(node.endpoint, capture(node.endpoint.path, path));
+    }
+
+    /**
+     * Finds the node of the endpoint matching the rest of a path, backtracking from literal to variable segments.
+     *
+     * @param node the node matching the path up to {@code start}
+     * @param path the path
+     * @param start the index of the first character of the next segment
+     * @return the node of the matching endpoint, or null if none matches
+     */
+    private static Node find(Node node, String path, int start) {
+        int end = path.indexOf('/', start);
+        if (end == -1)
+            end = path.length();
+        final int length = end - start;
+
+        for (int i = 0; i < node.literalSegments.length; ++i) {
+            String segment = node.literalSegments[i];
+            if (segment.length() == length && path.regionMatches(start, segment, 0, length)) {
+                Node found = next(node.literalChildren[i], path, end);
+                if (found != null)
+                    return found;
+            }
+        }
+
+        if (node.variable != null && length != 0)
+            return next(node.variable, path, end);
+
+        return null;
+    }
+
+    private static Node next(Node child, String path, int end) {
+        if (end == path.length())
+            return child.endpoint != null ? child : null;
+        else
+            return find(child, path, end + 1);
+    }
+
+    /**
+     * Extracts the bounds of the path variables of an endpoint from a path that matches it.
+     */
+    private static PathVariables capture(Endpoint.Path endpointPath, String path) {
+        int[] bounds = new int[2 * endpointPath.variableNames.length];
+
+        int start = 1;
+        int variable = 0;
+        for (int segment = 0; variable < endpointPath.variableSegments.length; ++segment) {
+            int end = path.indexOf('/', start);
+            if (end == -1)
+                end = path.length();
+
+            if (endpointPath.variableSegments[variable] == segment) {
+                bounds[2 * variable] = start;
+                bounds[2 * variable + 1] = end;
+                ++variable;
+            }
+
+            start = end + 1;
+        }
+
+        return new PathVariables(path, endpointPath.variableNames, bounds);
+    }
+
+    /**
+     * An endpoint matched by a path.
+     */
+    static final class Route {
+        final Endpoint endpoint;
+        final PathVariables pathVariables;
+
+        Route(Endpoint endpoint, PathVariables pathVariables) {
+            this.endpoint = endpoint;
+            this.pathVariables = pathVariables;
+        }
+    }
+
+    private static final class Node {
+        private String[] literalSegments = new String[0];
+        private Node[] literalChildren = new Node[0];
+        private Node variable;
+        private Endpoint endpoint;
+        private Route route;
+
+        private Node literalChild(String segment) {
+            for (int i = 0; i < literalSegments.length; ++i)
+                if (literalSegments[i].equals(segment))
+                    return literalChildren[i];
+
+            literalSegments = Arrays.copyOf(literalSegments, literalSegments.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literalSegments[literalSegments.length - 1] = segment;
+            return literalChildren[literalChildren.length - 1] = new Node();
+        }
+
+        private Node variableChild() {
+            if (variable == null)
+                variable = new Node();
+            return variable;
+        }
+    }
+}
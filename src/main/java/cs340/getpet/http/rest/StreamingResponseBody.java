@@ -0,0 +1,23 @@
+package cs340.getpet.http.rest;
+
+import java.io.IOException;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A response body that writes itself to the client piece by piece, rather than being serialized as a whole.
+ * <p>
+ * The body is written after the response code has been sent, so a failure while writing can no longer change the
+ * response code; the connection is closed instead, leaving the client with an incomplete response.
+ */
+public interface StreamingResponseBody extends ResponseBody {
+    /**
+     * Writes the body as JSON.
+     *
+     * @param writer the writer, which writes straight to the client
+     * @param gson the Gson instance to serialize nested objects with
+     * @throws IOException when the body could not be produced or written
+     */
+    void write(JsonWriter writer, Gson gson) throws IOException;
+}
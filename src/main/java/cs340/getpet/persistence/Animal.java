@@ -27,7 +27,8 @@ public class Animal {
      */
     public final Size size;
     /**
-     * The primary colors that the animal's fur has.
+     * The primary colors that the animal's fur has. Animals read from the database share this array with other
+     * animals of the same colors, so it must not be modified.
      */
     public final Color[] colors;
     /**
@@ -93,6 +94,21 @@ public class Animal {
         public Builder missing(boolean missing) { this.missing = missing; return this; }
     }
 
+    Animal(Integer intakeNumber, int cageNumber, Species species, String breed, Size size, Color[] colors, Gender gender, double weight, boolean vaccinated, boolean spayNeuter, String name, boolean missing) {
+        this.intakeNumber = intakeNumber;
+        this.cageNumber = cageNumber;
+        this.species = species;
+        this.breed = breed;
+        this.size = size;
+        this.colors = colors;
+        this.gender = gender;
+        this.weight = weight;
+        this.vaccinated = vaccinated;
+        this.spayNeuter = spayNeuter;
+        this.name = name;
+        this.missing = missing;
+    }
+
     Animal(Builder b) {
         intakeNumber = b.intakeNumber;
         cageNumber = b.cageNumber;
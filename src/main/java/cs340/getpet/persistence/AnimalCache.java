@@ -0,0 +1,108 @@
+package cs340.getpet.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of animals keyed by intake number, with entries expiring after a fixed time.
+ * <p>
+ * Writers invalidate the animals they change once their transaction has committed. A reader that loaded an animal
+ * while a write was in progress could still hold the old row, so loads are tagged with the {@link #generation()}
+ * taken before querying, and {@link #put(int, Animal, long)} discards the animal if any invalidation happened in
+ * between.
+ */
+final class AnimalCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final CacheStats.Counters counters = new CacheStats.Counters();
+    private final LinkedHashMap<Integer, Cached> entries;
+    private long generation;
+
+    /**
+     * @param maxSize the maximum number of cached animals
+     * @param ttlMillis how long an animal stays cached after being loaded
+     */
+    AnimalCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Cached> eldest) {
+                if (size() <= AnimalCache.this.maxSize)
+                    return false;
+
+                counters.evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached animal, counting the lookup as a hit or a miss.
+     *
+     * @param intakeNumber the intake number of the animal
+     * @return the animal, or null if it is not cached or has expired
+     */
+    synchronized Animal get(int intakeNumber) {
+        Cached entry = entries.get(intakeNumber);
+        if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+            entries.remove(intakeNumber);
+            counters.evictions.increment();
+            entry = null;
+        }
+
+        if (entry == null) {
+            counters.misses.increment();
+            return null;
+        }
+
+        counters.hits.increment();
+        return entry.animal;
+    }
+
+    /**
+     * @return the current generation, to be passed to {@link #put(int, Animal, long)} after loading an animal
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches an animal loaded from the database, unless an animal was invalidated since the load started.
+     *
+     * @param intakeNumber the intake number of the animal
+     * @param animal the animal
+     * @param generation the {@link #generation()} taken before loading the animal
+     */
+    synchronized void put(int intakeNumber, Animal animal, long generation) {
+        if (generation == this.generation)
+            entries.put(intakeNumber, new Cached(animal, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Removes an animal that has been added, changed or deleted.
+     *
+     * @param intakeNumber the intake number of the animal
+     */
+    synchronized void invalidate(int intakeNumber) {
+        ++generation;
+        entries.remove(intakeNumber);
+    }
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counters
+     */
+    CacheStats stats() {
+        return counters.snapshot();
+    }
+
+    private static final class Cached {
+        final Animal animal;
+        final long expiresAt;
+
+        Cached(Animal animal, long expiresAt) {
+            this.animal = animal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cs340.getpet.persistence;
+
+/**
+ * A committed write to an animal, as passed to the {@link Listener}s of a {@link Persistence}.
+ */
+public final class AnimalChange {
+    /**
+     * Receives the changes committed to a database, one at a time and in commit order.
+     * <p>
+     * Listeners are called on the thread that commits writes, while it holds the writer connection, so they must
+     * not block; a listener that needs to do I/O should hand the change off to another thread.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void changed(AnimalChange change);
+    }
+
+    public enum Kind {
+        CREATED,
+        UPDATED,
+        DELETED,
+    }
+
+    /**
+     * Whether the animal was created, updated or deleted.
+     */
+    public final Kind kind;
+    /**
+     * The intake number of the animal.
+     */
+    public final int intakeNumber;
+    /**
+     * The animal as committed, or null if it was deleted.
+     */
+    public final Animal animal;
+    /**
+     * The cage that the animal was in before the change, or 0 if it was created.
+     */
+    public final int previousCageNumber;
+    /**
+     * The species of the animal before the change, or null if it was created.
+     */
+    public final Species previousSpecies;
+
+    AnimalChange(Kind kind, int intakeNumber, Animal animal, int previousCageNumber, Species previousSpecies) {
+        this.kind = kind;
+        this.intakeNumber = intakeNumber;
+        this.animal = animal;
+        this.previousCageNumber = previousCageNumber;
+        this.previousSpecies = previousSpecies;
+    }
+}
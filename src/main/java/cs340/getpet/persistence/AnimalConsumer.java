@@ -0,0 +1,11 @@
+package cs340.getpet.persistence;
+
+/**
+ * Receives animals one at a time as they are read from the database.
+ *
+ * @param <E> the type of exception that the consumer may throw, e.g. an IOException when writing to a client
+ */
+@FunctionalInterface
+public interface AnimalConsumer<E extends Exception> {
+    void accept(Animal animal) throws E;
+}
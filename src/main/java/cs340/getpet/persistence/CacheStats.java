@@ -0,0 +1,53 @@
+package cs340.getpet.persistence;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A point-in-time snapshot of the counters of a cache.
+ */
+public final class CacheStats {
+    /**
+     * The number of lookups that were answered from the cache.
+     */
+    public final long hits;
+    /**
+     * The number of lookups that had to go to the database.
+     */
+    public final long misses;
+    /**
+     * The number of entries removed to keep the cache within its bounds.
+     */
+    public final long evictions;
+
+    public CacheStats(long hits, long misses, long evictions) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * @return the fraction of lookups that were hits, or 0 if there have been no lookups
+     */
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * The live counters of a cache, which can be updated from any thread.
+     */
+    static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+
+        CacheStats snapshot() {
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
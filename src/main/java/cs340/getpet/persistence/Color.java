@@ -1,12 +1,14 @@
 package cs340.getpet.persistence;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
-import cs340.getpet.util.EnumSerializer;
+import cs340.getpet.util.EnumCodec;
 
 /**
  * The color of an animal.
  */
+@JsonAdapter(EnumCodec.Factory.class)
 public enum Color {
     @SerializedName("black")
     BLACK,
@@ -21,12 +23,17 @@ public enum Color {
     @SerializedName("lGray")
     LIGHT_GRAY;
 
+    private static final EnumCodec<Color> CODEC = EnumCodec.of(Color.class);
+
     @Override
     public String toString() {
-        return EnumSerializer.toString(this, Color.class);
+        return CODEC.toString(this);
     }
 
+    /**
+     * @throws IllegalArgumentException when no constant has the name
+     */
     public static Color fromString(String s) {
-        return EnumSerializer.fromString(s, Color.class);
+        return CODEC.fromString(s);
     }
 }
\ No newline at end of file
@@ -0,0 +1,259 @@
+package cs340.getpet.persistence;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory copy of the Animals table laid out for answering searches without SQLite.
+ * <p>
+ * Intake numbers are assigned sequentially, so they are used directly as row positions. Every enum constant and
+ * boolean that can be searched for has a bitmap of the rows holding it, so the enum and boolean predicates of a
+ * search are answered by ANDing and ORing bitmaps a word at a time. The remaining predicates, on the cage number
+ * and breed, are checked row by row against the rows left over, using a primitive column for cage numbers.
+ * <p>
+ * Pages sorted by intake number are read off the bitmap in order. Pages sorted by name either walk the animals in
+ * name order, skipping those that do not match, or select the first matches by name from every match, whichever
+ * visits fewer animals given how many animals match.
+ * <p>
+ * The index is filled from the database when it is created, and writers update it while still holding the writer
+ * connection, so that it reflects the committed writes in the order they were committed.
+ */
+final class ColumnarIndex {
+    /**
+     * Orders names as SQLite does in {@code ORDER BY name NULLS FIRST}, with unnamed animals first.
+     */
+    private static final Comparator<String> NAMES = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Animal> BY_NAME = Comparator
+            .comparing((Animal animal) -> animal.name, NAMES)
+            .thenComparingInt(animal -> animal.intakeNumber);
+    private static final Comparator<NameKey> NAME_KEYS = Comparator
+            .comparing((NameKey key) -> key.name, NAMES)
+            .thenComparingInt(key -> key.intakeNumber);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final BitSet present = new BitSet();
+    private final BitSet[] species = bitmaps(Species.values().length);
+    private final BitSet[] genders = bitmaps(Gender.values().length);
+    private final BitSet[] sizes = bitmaps(Size.values().length);
+    private final BitSet[] colors = bitmaps(Color.values().length);
+    private final BitSet vaccinated = new BitSet();
+    private final BitSet spayNeuter = new BitSet();
+    private int[] cageNumbers = new int[1024];
+    private Animal[] animals = new Animal[1024];
+    private final TreeSet<NameKey> byName = new TreeSet<>(NAME_KEYS);
+
+    private static BitSet[] bitmaps(int count) {
+        BitSet[] bitmaps = new BitSet[count];
+        for (int i = 0; i < count; ++i)
+            bitmaps[i] = new BitSet();
+        return bitmaps;
+    }
+
+    /**
+     * Adds or replaces an animal.
+     *
+     * @param animal the animal, with its intake number
+     */
+    void put(Animal animal) {
+        final int row = animal.intakeNumber;
+
+        lock.writeLock().lock();
+        try {
+            if (present.get(row))
+                clear(row);
+
+            if (row >= animals.length) {
+                int length = Math.max(row + 1, 2 * animals.length);
+                animals = Arrays.copyOf(animals, length);
+                cageNumbers = Arrays.copyOf(cageNumbers, length);
+            }
+
+            animals[row] = animal;
+            cageNumbers[row] = animal.cageNumber;
+            present.set(row);
+            species[animal.species.ordinal()].set(row);
+            genders[animal.gender.ordinal()].set(row);
+            sizes[animal.size.ordinal()].set(row);
+            for (Color color : animal.colors)
+                colors[color.ordinal()].set(row);
+            vaccinated.set(row, animal.vaccinated);
+            spayNeuter.set(row, animal.spayNeuter);
+            byName.add(new NameKey(animal.name, row));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an animal, if present.
+     *
+     * @param intakeNumber the intake number of the animal
+     */
+    void remove(int intakeNumber) {
+        lock.writeLock().lock();
+        try {
+            if (present.get(intakeNumber))
+                clear(intakeNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear(int row) {
+        Animal animal = animals[row];
+        animals[row] = null;
+        present.clear(row);
+        species[animal.species.ordinal()].clear(row);
+        genders[animal.gender.ordinal()].clear(row);
+        sizes[animal.size.ordinal()].clear(row);
+        for (Color color : animal.colors)
+            colors[color.ordinal()].clear(row);
+        vaccinated.clear(row);
+        spayNeuter.clear(row);
+        byName.remove(new NameKey(animal.name, row));
+    }
+
+    /**
+     * Finds one page of the animals matching a search, with the same results and order as the SQL search of
+     * {@link Persistence}.
+     *
+     * @param query the search query
+     * @param cursor the decoded cursor of the query, or null for the first page
+     * @param pageSize the maximum number of animals to return
+     * @return the animals, in order
+     */
+    Animal[] search(SearchQuery query, SearchCursor cursor, int pageSize) {
+        lock.readLock().lock();
+        try {
+            BitSet rows = (BitSet) present.clone();
+            if (query.species != null)
+                rows.and(species[query.species.ordinal()]);
+            and(rows, genders, query.genders);
+            and(rows, sizes, query.sizes);
+            and(rows, colors, query.colors);
+            if (query.vaccinated)
+                rows.and(vaccinated);
+            if (query.spayNeuter)
+                rows.and(spayNeuter);
+
+            if (query.sortOrDefault() == SearchQuery.Sort.INTAKE_NUMBER) {
+                Animal[] page = new Animal[pageSize];
+                int count = 0;
+                int row = rows.nextSetBit(cursor != null ? cursor.intakeNumber + 1 : 0);
+                for (; row >= 0 && count < pageSize; row = rows.nextSetBit(row + 1))
+                    if (matchesRest(query, row))
+                        page[count++] = animals[row];
+                return Arrays.copyOf(page, count);
+            }
+
+            // walking in name order visits about pageSize * present / matches animals, selecting visits every match
+            long matches = rows.cardinality();
+            if (matches * matches > (long) pageSize * present.cardinality()) {
+                NavigableSet<NameKey> keys = cursor != null
+                        ? byName.tailSet(new NameKey(cursor.name, cursor.intakeNumber), false)
+                        : byName;
+
+                Animal[] page = new Animal[pageSize];
+                int count = 0;
+                for (Iterator<NameKey> it = keys.iterator(); it.hasNext() && count < pageSize; ) {
+                    int row = it.next().intakeNumber;
+                    if (rows.get(row) && matchesRest(query, row))
+                        page[count++] = animals[row];
+                }
+                return Arrays.copyOf(page, count);
+            }
+
+            // keep the first page of matches by name in a heap whose head is the last of them
+            PriorityQueue<Animal> page = new PriorityQueue<>(Math.min(pageSize, 1024) + 1, BY_NAME.reversed());
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (!matchesRest(query, row))
+                    continue;
+
+                Animal animal = animals[row];
+                if (cursor != null) {
+                    int order = NAMES.compare(animal.name, cursor.name);
+                    if (order < 0 || order == 0 && animal.intakeNumber <= cursor.intakeNumber)
+                        continue;
+                }
+
+                if (page.size() < pageSize)
+                    page.add(animal);
+                else if (pageSize > 0 && BY_NAME.compare(animal, page.peek()) < 0) {
+                    page.poll();
+                    page.add(animal);
+                }
+            }
+
+            Animal[] sorted = page.toArray(new Animal[0]);
+            Arrays.sort(sorted, BY_NAME);
+            return sorted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The position of an animal in name order.
+     */
+    private static final class NameKey {
+        final String name;
+        final int intakeNumber;
+
+        NameKey(String name, int intakeNumber) {
+            this.name = name;
+            this.intakeNumber = intakeNumber;
+        }
+    }
+
+    /**
+     * Keeps the rows that have any of the values, if there are any values.
+     */
+    private static void and(BitSet rows, BitSet[] bitmaps, Enum<?>[] values) {
+        if (values == null || values.length == 0)
+            return;
+
+        BitSet any = new BitSet();
+        for (Enum<?> value : values)
+            any.or(bitmaps[value.ordinal()]);
+        rows.and(any);
+    }
+
+    /**
+     * Checks the predicates of a search that have no bitmaps. A missing breed matches no breed, as NULL is never
+     * LIKE anything.
+     */
+    private boolean matchesRest(SearchQuery query, int row) {
+        if (query.cageNumber != null && cageNumbers[row] != query.cageNumber)
+            return false;
+        if (query.breed == null)
+            return true;
+        String breed = animals[row].breed;
+        return breed != null && containsIgnoreCase(breed, query.breed);
+    }
+
+    /**
+     * Matches like SQLite's {@code LIKE '%fragment%'}, which ignores the case of ASCII letters only.
+     */
+    private static boolean containsIgnoreCase(String s, String fragment) {
+        outer:
+        for (int i = 0; i + fragment.length() <= s.length(); ++i) {
+            for (int j = 0; j < fragment.length(); ++j)
+                if (asciiLowerCase(s.charAt(i + j)) != asciiLowerCase(fragment.charAt(j)))
+                    continue outer;
+            return true;
+        }
+        return false;
+    }
+
+    private static char asciiLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,210 @@
+package cs340.getpet.persistence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cs340.getpet.persistence.Persistence.PersistenceException;
+
+/**
+ * A bounded pool of SQLite connections to a single database.
+ * <p>
+ * Writes are serialized through a single writer connection, and reads lease one of a fixed number of read
+ * connections. File databases are switched to WAL mode so that readers do not block the writer or each other.
+ * An in-memory database only exists for the connection that opened it, so in that case every lease shares the
+ * writer connection instead.
+ * <p>
+ * When no connection becomes available within the configured timeout, leasing fails with a
+ * {@link PersistenceException} rather than queueing the caller indefinitely.
+ * <p>
+ * Every connection has its own {@link StatementCache}, available through {@link Lease#prepare(String)}.
+ */
+final class ConnectionPool implements AutoCloseable {
+    private final StatementCache writer;
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private final BlockingQueue<StatementCache> idleReaders;
+    private final StatementCache[] readers;
+    private final long timeoutMillis;
+    private final CacheStats.Counters statementCounters = new CacheStats.Counters();
+
+    /**
+     * Opens the connections of the pool.
+     *
+     * @param database the database filename to give to SQLite, or ":memory:" for an in-memory DB
+     * @param readConnections the number of read connections to open; ignored for in-memory databases
+     * @param timeoutMillis how long to wait for a connection before giving up
+     * @param statementCacheSize the maximum number of prepared statements cached per connection
+     * @throws SQLException when a connection could not be opened or configured
+     */
+    ConnectionPool(String database, int readConnections, long timeoutMillis, int statementCacheSize) throws SQLException {
+        this.timeoutMillis = timeoutMillis;
+
+        Connection writerConnection = DriverManager.getConnection("jdbc:sqlite:" + database);
+        writer = new StatementCache(writerConnection, statementCacheSize, statementCounters);
+
+        if (isInMemory(database)) {
+            readers = new StatementCache[0];
+            idleReaders = null;
+            return;
+        }
+
+        readers = new StatementCache[readConnections];
+        idleReaders = new ArrayBlockingQueue<>(readConnections);
+        Connection readerConnection = null;
+        try {
+            try (Statement stmt = writerConnection.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+                stmt.execute("PRAGMA busy_timeout = " + timeoutMillis);
+            }
+
+            for (int i = 0; i < readConnections; ++i) {
+                readerConnection = DriverManager.getConnection("jdbc:sqlite:" + database);
+                try (Statement stmt = readerConnection.createStatement()) {
+                    stmt.execute("PRAGMA query_only = true");
+                    stmt.execute("PRAGMA busy_timeout = " + timeoutMillis);
+                }
+                readers[i] = new StatementCache(readerConnection, statementCacheSize, statementCounters);
+                idleReaders.add(readers[i]);
+                readerConnection = null;
+            }
+        } catch (SQLException | RuntimeException e) {
+            // close whatever was opened, since the caller never gets a pool to close
+            if (readerConnection != null)
+                closeQuietly(readerConnection, e);
+            for (StatementCache reader : readers)
+                if (reader != null)
+                    closeQuietly(reader.connection, e);
+            closeQuietly(writerConnection, e);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Connection connection, Exception cause) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @return whether the database is in memory, in which case every lease shares the writer connection
+     */
+    boolean isInMemory() {
+        return idleReaders == null;
+    }
+
+    /**
+     * Recognizes the ways of naming an in-memory database: an empty name, ":memory:" on its own or within a URI
+     * such as {@code file::memory:?cache=shared}, and URIs with a {@code mode=memory} parameter.
+     *
+     * @param database the database filename given to SQLite
+     * @return whether the database is in memory
+     */
+    static boolean isInMemory(String database) {
+        int query = database.indexOf('?');
+        String path = query < 0 ? database : database.substring(0, query);
+        return path.isEmpty() || path.contains(":memory:") || (query >= 0 && database.indexOf("mode=memory", query) >= 0);
+    }
+
+    /**
+     * Leases a connection that may only be used for reading.
+     *
+     * @return the lease, which must be closed to return the connection to the pool
+     * @throws PersistenceException when no connection became available in time
+     */
+    Lease read() throws PersistenceException {
+        if (idleReaders == null)
+            return write();
+
+        StatementCache reader;
+        try {
+            reader = idleReaders.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Interrupted while waiting for a read connection", e);
+        }
+
+        if (reader == null)
+            throw new PersistenceException("Timed out waiting for a read connection");
+
+        return new Lease(reader, () -> idleReaders.add(reader));
+    }
+
+    /**
+     * Leases the writer connection, waiting for any other writer to finish first.
+     *
+     * @return the lease, which must be closed to release the writer
+     * @throws PersistenceException when the writer did not become available in time
+     */
+    Lease write() throws PersistenceException {
+        try {
+            if (!writeLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS))
+                throw new PersistenceException("Timed out waiting for the write connection");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Interrupted while waiting for the write connection", e);
+        }
+
+        return new Lease(writer, writeLock::unlock);
+    }
+
+    /**
+     * @return the combined counters of the statement caches of every connection
+     */
+    CacheStats statementCacheStats() {
+        return statementCounters.snapshot();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        for (StatementCache reader : readers) {
+            reader.clear();
+            reader.connection.close();
+        }
+        writer.clear();
+        writer.connection.close();
+    }
+
+    /**
+     * Exclusive use of a connection from the pool.
+     */
+    static final class Lease implements AutoCloseable {
+        final Connection connection;
+        private final StatementCache statements;
+        private final Runnable release;
+        private boolean released;
+
+        private Lease(StatementCache statements, Runnable release) {
+            this.connection = statements.connection;
+            this.statements = statements;
+            this.release = release;
+        }
+
+        /**
+         * Gets a cached prepared statement of the leased connection. The statement must not be closed, and must
+         * not be used once the lease is closed.
+         *
+         * @param sql the SQL of the statement
+         * @return the prepared statement
+         * @throws SQLException when the statement could not be prepared
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            return statements.prepare(sql);
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release.run();
+            }
+        }
+    }
+}
@@ -1,24 +1,31 @@
 package cs340.getpet.persistence;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
-import cs340.getpet.util.EnumSerializer;
+import cs340.getpet.util.EnumCodec;
 
 /**
  * The gender of an animal.
  */
+@JsonAdapter(EnumCodec.Factory.class)
 public enum Gender {
     @SerializedName("m")
     MALE,
     @SerializedName("f")
     FEMALE;
 
+    private static final EnumCodec<Gender> CODEC = EnumCodec.of(Gender.class);
+
     @Override
     public String toString() {
-        return EnumSerializer.toString(this, Gender.class);
+        return CODEC.toString(this);
     }
 
+    /**
+     * @throws IllegalArgumentException when no constant has the name
+     */
     public static Gender fromString(String s) {
-        return EnumSerializer.fromString(s, Gender.class);
+        return CODEC.fromString(s);
     }
 }
\ No newline at end of file
@@ -0,0 +1,324 @@
+package cs340.getpet.persistence;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import cs340.getpet.util.EnumCodec;
+
+/**
+ * Streaming Gson type adapters for the persistence types that are sent to and received from clients.
+ * <p>
+ * The adapters read and write the same JSON as Gson does by reflection: null fields are omitted, enums are written
+ * by their serialized names, missing fields are left null, false or zero, and unknown fields are skipped. They read
+ * fields straight into the constructors of the types, so no reflection or {@code Unsafe} allocation is involved.
+ * <p>
+ * Values that could never pass validation are rejected while parsing with a {@link JsonSyntaxException}: numbers
+ * that do not fit their field, unknown enum names, and null elements in arrays of enums.
+ */
+public final class JsonAdapters {
+    private static final EnumCodec<Species> SPECIES = EnumCodec.of(Species.class);
+    private static final EnumCodec<Gender> GENDERS = EnumCodec.of(Gender.class);
+    private static final EnumCodec<Size> SIZES = EnumCodec.of(Size.class);
+    private static final EnumCodec<Color> COLORS = EnumCodec.of(Color.class);
+    private static final EnumCodec<SearchQuery.Sort> SORTS = EnumCodec.of(SearchQuery.Sort.class);
+
+    /**
+     * Reads and writes {@link Animal}s.
+     */
+    public static final TypeAdapter<Animal> ANIMAL = new TypeAdapter<Animal>() {
+        @Override
+        public void write(JsonWriter out, Animal animal) throws IOException {
+            if (animal == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (animal.intakeNumber != null)
+                out.name("intakeNumber").value(animal.intakeNumber.intValue());
+            out.name("cageNumber").value(animal.cageNumber);
+            writeEnum(out, "species", SPECIES, animal.species);
+            writeString(out, "breed", animal.breed);
+            writeEnum(out, "size", SIZES, animal.size);
+            writeEnums(out, "colors", COLORS, animal.colors);
+            writeEnum(out, "gender", GENDERS, animal.gender);
+            out.name("weight").value(animal.weight);
+            out.name("vaccinated").value(animal.vaccinated);
+            out.name("spayNeuter").value(animal.spayNeuter);
+            writeString(out, "name", animal.name);
+            out.name("missing").value(animal.missing);
+            out.endObject();
+        }
+
+        @Override
+        public Animal read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Integer intakeNumber = null;
+            int cageNumber = 0;
+            Species species = null;
+            String breed = null;
+            Size size = null;
+            Color[] colors = null;
+            Gender gender = null;
+            double weight = 0;
+            boolean vaccinated = false;
+            boolean spayNeuter = false;
+            String name = null;
+            boolean missing = false;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "intakeNumber": intakeNumber = readInteger(in); break;
+                    case "cageNumber": cageNumber = readInt(in); break;
+                    case "species": species = readEnum(in, SPECIES); break;
+                    case "breed": breed = readString(in); break;
+                    case "size": size = readEnum(in, SIZES); break;
+                    case "colors": colors = readEnums(in, COLORS, Color.class); break;
+                    case "gender": gender = readEnum(in, GENDERS); break;
+                    case "weight": weight = readDouble(in); break;
+                    case "vaccinated": vaccinated = readBoolean(in); break;
+                    case "spayNeuter": spayNeuter = readBoolean(in); break;
+                    case "name": name = readString(in); break;
+                    case "missing": missing = readBoolean(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new Animal(intakeNumber, cageNumber, species, breed, size, colors, gender, weight, vaccinated, spayNeuter, name, missing);
+        }
+    };
+
+    /**
+     * Reads and writes {@link SearchQuery}s.
+     */
+    public static final TypeAdapter<SearchQuery> SEARCH_QUERY = new TypeAdapter<SearchQuery>() {
+        @Override
+        public void write(JsonWriter out, SearchQuery query) throws IOException {
+            if (query == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            writeEnum(out, "species", SPECIES, query.species);
+            writeEnums(out, "genders", GENDERS, query.genders);
+            writeString(out, "breed", query.breed);
+            writeEnums(out, "colors", COLORS, query.colors);
+            writeEnums(out, "sizes", SIZES, query.sizes);
+            if (query.cageNumber != null)
+                out.name("cageNumber").value(query.cageNumber.intValue());
+            out.name("vaccinated").value(query.vaccinated);
+            out.name("spayNeuter").value(query.spayNeuter);
+            if (query.limit != null)
+                out.name("limit").value(query.limit.intValue());
+            writeString(out, "after", query.after);
+            writeEnum(out, "sort", SORTS, query.sort);
+            out.endObject();
+        }
+
+        @Override
+        public SearchQuery read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Species species = null;
+            Gender[] genders = null;
+            String breed = null;
+            Color[] colors = null;
+            Size[] sizes = null;
+            Integer cageNumber = null;
+            boolean vaccinated = false;
+            boolean spayNeuter = false;
+            Integer limit = null;
+            String after = null;
+            SearchQuery.Sort sort = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "species": species = readEnum(in, SPECIES); break;
+                    case "genders": genders = readEnums(in, GENDERS, Gender.class); break;
+                    case "breed": breed = readString(in); break;
+                    case "colors": colors = readEnums(in, COLORS, Color.class); break;
+                    case "sizes": sizes = readEnums(in, SIZES, Size.class); break;
+                    case "cageNumber": cageNumber = readInteger(in); break;
+                    case "vaccinated": vaccinated = readBoolean(in); break;
+                    case "spayNeuter": spayNeuter = readBoolean(in); break;
+                    case "limit": limit = readInteger(in); break;
+                    case "after": after = readString(in); break;
+                    case "sort": sort = readEnum(in, SORTS); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new SearchQuery(species, genders, breed, colors, sizes, cageNumber, vaccinated, spayNeuter, limit, after, sort);
+        }
+    };
+
+    /**
+     * Reads and writes {@link Cage}s.
+     */
+    public static final TypeAdapter<Cage> CAGE = new TypeAdapter<Cage>() {
+        @Override
+        public void write(JsonWriter out, Cage cage) throws IOException {
+            if (cage == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("cageNumber").value(cage.cageNumber);
+            out.name("dogCount").value(cage.dogCount);
+            out.name("catCount").value(cage.catCount);
+            out.endObject();
+        }
+
+        @Override
+        public Cage read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int cageNumber = 0;
+            int dogCount = 0;
+            int catCount = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "cageNumber": cageNumber = readInt(in); break;
+                    case "dogCount": dogCount = readInt(in); break;
+                    case "catCount": catCount = readInt(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new Cage(cageNumber, dogCount, catCount);
+        }
+    };
+
+    private JsonAdapters() {}
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null)
+            out.name(name).value(value);
+    }
+
+    private static <T extends Enum<T>> void writeEnum(JsonWriter out, String name, EnumCodec<T> codec, T value) throws IOException {
+        if (value != null)
+            out.name(name).value(codec.toString(value));
+    }
+
+    private static <T extends Enum<T>> void writeEnums(JsonWriter out, String name, EnumCodec<T> codec, T[] values) throws IOException {
+        if (values == null)
+            return;
+
+        out.name(name).beginArray();
+        for (T value : values) {
+            if (value == null)
+                out.nullValue();
+            else
+                out.value(codec.toString(value));
+        }
+        out.endArray();
+    }
+
+    private static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.NULL)
+            return false;
+
+        in.nextNull();
+        return true;
+    }
+
+    private static <T> T readNull(JsonReader in) throws IOException {
+        in.nextNull();
+        return null;
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextString();
+    }
+
+    private static boolean readBoolean(JsonReader in) throws IOException {
+        if (skipNull(in))
+            return false;
+        if (in.peek() == JsonToken.STRING)
+            return Boolean.parseBoolean(in.nextString());
+        return in.nextBoolean();
+    }
+
+    private static int readInt(JsonReader in) throws IOException {
+        if (skipNull(in))
+            return 0;
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException("Expected an int at " + in.getPath(), e);
+        }
+    }
+
+    private static Integer readInteger(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.NULL ? readNull(in) : readInt(in);
+    }
+
+    private static double readDouble(JsonReader in) throws IOException {
+        if (skipNull(in))
+            return 0;
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException("Expected a number at " + in.getPath(), e);
+        }
+    }
+
+    private static <T extends Enum<T>> T readEnum(JsonReader in, EnumCodec<T> codec) throws IOException {
+        if (skipNull(in))
+            return null;
+
+        String name = in.nextString();
+        try {
+            return codec.fromString(name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException(e.getMessage() + " at " + in.getPath(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Enum<T>> T[] readEnums(JsonReader in, EnumCodec<T> codec, Class<T> type) throws IOException {
+        if (skipNull(in))
+            return null;
+
+        T[] values = (T[]) Array.newInstance(type, 4);
+        int count = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            T value = readEnum(in, codec);
+            if (value == null)
+                throw new JsonSyntaxException("Unexpected null at " + in.getPath());
+            if (count == values.length)
+                values = Arrays.copyOf(values, 2 * count);
+            values[count++] = value;
+        }
+        in.endArray();
+        return Arrays.copyOf(values, count);
+    }
+}
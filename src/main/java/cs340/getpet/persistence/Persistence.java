@@ -6,15 +6,56 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.Stack;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
-import cs340.getpet.util.EnumSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-// NOTE: this class cannot be multithreaded using a single connection, as it would have race conditions.
-public class Persistence {
-    Connection conn;
+/**
+ * Provides access to the animals stored in the database.
+ * <p>
+ * This class is thread-safe: every operation leases its own connection from a {@link ConnectionPool}, so reads
+ * run in parallel while writes are serialized through a single writer connection.
+ */
+public class Persistence implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(Persistence.class);
+
+    private static final int TRIGRAM_LENGTH = 3;
+    /**
+     * The columns of the Animals table, in the order read by {@link #animalFromRow(ResultSet)}.
+     */
+    private static final String ANIMAL_COLUMNS = "intakeNumber, cageNumber, species, breed, size, color, gender, weight, vaccinated, spayNeuter, name, missing";
+    /**
+     * The most distinct breeds and color columns that are kept to share between animals. Both are bounded, as they
+     * hold whatever clients have written, and values beyond them are simply not shared.
+     */
+    private static final int MAX_BREEDS = 4096;
+    private static final int MAX_COLOR_LISTS = 1024;
+    /**
+     * The number of animals read by each query of an export.
+     */
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    private final ConnectionPool pool;
+    private final int maxPageSize;
+    private final AnimalCache animalCache;
+    private final SearchCache searchCache;
+    private final ColumnarIndex columnarIndex;
+    private final QueryLog queryLog;
+    private final ConcurrentHashMap<String, Color[]> colorLists = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> breeds = new ConcurrentHashMap<>();
+    private final WriteQueue writeQueue;
+    private final long writeTimeoutMillis;
+    private final List<AnimalChange.Listener> listeners = new CopyOnWriteArrayList<>();
 
     public static class PersistenceException extends Exception {
         PersistenceException(String message) {
@@ -27,74 +68,244 @@ public class Persistence {
     }
 
     /**
-     * Creates a Persistence, connecting to the database using the given information.
+     * Creates a Persistence, connecting to the database using the default configuration.
      *
      * @param database the database filename to give to SQLite, or ":memory:" for an in-memory DB
      * @throws PersistenceException when the database connection could not be created
      */
     public Persistence(String database) throws PersistenceException {
+        this(new Configuration.Builder().database(database).build());
+    }
+
+    /**
+     * Creates a Persistence, connecting to the database using the given configuration.
+     * <p>
+     * A database that already holds the schema is used as is and only migrated to the current schema version.
+     * Otherwise it is restored from the configured snapshot, if any, or filled with the sample data.
+     *
+     * @param conf the configuration
+     * @throws PersistenceException when the database connection could not be created
+     */
+    public Persistence(Configuration conf) throws PersistenceException {
+        maxPageSize = conf.maxPageSize;
+        animalCache = conf.animalCacheSize > 0 ? new AnimalCache(conf.animalCacheSize, conf.animalCacheTtlMillis) : null;
+        searchCache = conf.searchCacheSize > 0 ? new SearchCache(conf.searchCacheSize) : null;
+        columnarIndex = conf.columnarSearch ? new ColumnarIndex() : null;
+        queryLog = new QueryLog(conf.slowQueryMillis);
+
         try {
-            conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+            pool = new ConnectionPool(conf.database, conf.readConnections, conf.connectionTimeoutMillis, conf.statementCacheSize);
         } catch (SQLException e) {
             throw new PersistenceException("Failed to create database connection", e);
         }
         
+        // an existing database is used as is, and only an empty one is filled from the snapshot or sample data
+        try (ConnectionPool.Lease lease = pool.write()) {
+            if (conf.snapshot != null && !hasSchema(lease)) {
+                try {
+                    restoreSnapshot(lease, conf.snapshot);
+                } catch (SQLException e) {
+                    throw new PersistenceException("Failed to restore database snapshot " + conf.snapshot, e);
+                }
+            }
+
+            if (!hasSchema(lease)) {
+                try {
+                    applySampleData(lease);
+                } catch (SQLException | IOException e) {
+                    throw new PersistenceException("Failed to apply sample data", e);
+                }
+            }
+
+            try {
+                Schema.migrate(lease.connection);
+            } catch (SQLException e) {
+                throw new PersistenceException("Failed to migrate database schema", e);
+            }
+        } catch (PersistenceException e) {
+            closeQuietly();
+            throw e;
+        }
+
+        if (columnarIndex != null)
+            exportAnimals(columnarIndex::put);
+
+        writeTimeoutMillis = conf.writeTimeoutMillis;
+        writeQueue = new WriteQueue(pool, conf.writeBatchSize, conf.writeDelayMillis, conf.writeQueueCapacity);
+    }
+
+    private void closeQuietly() {
         try {
-            applySampleData();
-        } catch (SQLException | IOException e) {
-            throw new PersistenceException("Failed to apply sample data", e);
+            pool.close();
+        } catch (SQLException e) {
+            // already failing, the original exception is more useful
+        }
+    }
+
+    /**
+     * @return whether the database contains the Animals table
+     */
+    private static boolean hasSchema(ConnectionPool.Lease lease) throws PersistenceException {
+        try (ResultSet resultSet = lease.prepare("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'Animals'").executeQuery()) {
+            return resultSet.next();
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to read database schema", e);
         }
     }
 
     /**
-     * Applies sample data to the database.
+     * Copies the contents of a database file into the database using SQLite's online backup API, which copies
+     * pages rather than replaying statements.
+     *
+     * @param lease the lease on the writer connection
+     * @param snapshot the path of the database file to copy
+     * @throws SQLException when the snapshot could not be read or copied
+     */
+    private static void restoreSnapshot(ConnectionPool.Lease lease, String snapshot) throws SQLException {
+        try (Statement stmt = lease.connection.createStatement()) {
+            stmt.executeUpdate("restore from '" + snapshot.replace("'", "''") + "'");
+        }
+    }
+
+    /**
+     * Applies sample data to the database in a single transaction.
      * 
+     * @param lease the lease on the writer connection
      * @throws SQLException when the application fails
      * @throws IOException when the sample data cannot be read
      */
-    private void applySampleData() throws SQLException, IOException {
-        Statement batch = conn.createStatement();
+    private void applySampleData(ConnectionPool.Lease lease) throws SQLException, IOException {
         String sql = new String(getClass().getResourceAsStream("/sample-db-create.sql").readAllBytes(), StandardCharsets.UTF_8);
-        for (String stmt : sql.split(";")) {
-            batch.addBatch(stmt.trim());
+        Connection conn = lease.connection;
+        conn.setAutoCommit(false);
+        try (Statement batch = conn.createStatement()) {
+            for (String stmt : sql.split(";")) {
+                batch.addBatch(stmt.trim());
+            }
+            batch.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Writes a copy of the database to a file using SQLite's online backup API, so that it can later be used as
+     * the {@link Configuration#snapshot} of a new database. Writes may continue while the copy is made; the copy
+     * holds the database as of one point in time.
+     *
+     * @param file the path of the file to write, which is replaced if it exists
+     * @throws PersistenceException when the copy could not be written
+     */
+    public void saveSnapshot(String file) throws PersistenceException {
+        try (ConnectionPool.Lease lease = pool.read();
+                Statement stmt = lease.connection.createStatement()) {
+            stmt.executeUpdate("backup to '" + file.replace("'", "''") + "'");
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to save database snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Retrieves the combined hit, miss and eviction counters of the prepared statement caches.
+     *
+     * @return a snapshot of the counters
+     */
+    public CacheStats getStatementCacheStats() {
+        return pool.statementCacheStats();
+    }
+
+    /**
+     * Retrieves the hit, miss and eviction counters of the cache in front of {@link #getAnimal(int)}. Expired
+     * animals count as evictions.
+     *
+     * @return a snapshot of the counters, or all zeros if the cache is disabled
+     */
+    public CacheStats getAnimalCacheStats() {
+        return animalCache != null ? animalCache.stats() : new CacheStats(0, 0, 0);
+    }
+
+    /**
+     * Retrieves the hit, miss and eviction counters of the cache of search results. Lookups of searches cached
+     * before the latest write count as misses.
+     *
+     * @return a snapshot of the counters, or all zeros if the cache is disabled
+     */
+    public CacheStats getSearchCacheStats() {
+        return searchCache != null ? searchCache.stats() : new CacheStats(0, 0, 0);
+    }
+
+    /**
+     * Retrieves the timings of the database operations, such as "search" or "getCages", that have run so far.
+     *
+     * @return a snapshot of the timings of each operation, sorted by operation
+     */
+    public QueryStats[] getQueryStats() {
+        return queryLog.stats();
+    }
+
+    /**
+     * Registers a listener to be told of every write committed from now on.
+     *
+     * @param listener the listener
+     */
+    public void addChangeListener(AnimalChange.Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added by {@link #addChangeListener(AnimalChange.Listener)}.
+     *
+     * @param listener the listener
+     */
+    public void removeChangeListener(AnimalChange.Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Commits the queued writes and closes every connection to the database.
+     *
+     * @throws PersistenceException when a connection could not be closed
+     */
+    @Override
+    public void close() throws PersistenceException {
+        writeQueue.close();
+        try {
+            pool.close();
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to close database connections", e);
         }
-        batch.executeBatch();
     }
 
     /**
      * Retrieves information about the cages contained in the database.
+     * <p>
+     * The number of animals in each cage is kept up to date by triggers as animals are written, so this only reads
+     * one row per occupied cage.
      * 
-     * @return The cages in the database
+     * @return The occupied cages in the database, ordered by cage number
      * @throws PersistenceException when the database query fails
      */
     public Cage[] getCages() throws PersistenceException {
-        try (Statement stmt = conn.createStatement()) {
-            ResultSet resultSet = stmt.executeQuery("SELECT cageNumber, species, COUNT(*) as count FROM Animals GROUP BY cageNumber, species");
-
-            Stack<Cage> cages = new Stack<>();
-            while (resultSet.next()) {
-                int cageNumber = resultSet.getInt("cageNumber");
-                Species species = EnumSerializer.fromString(resultSet.getString("species"), Species.class);
-                
-                int dogCount;
-                int catCount;
-                if (species == Species.DOG) {
-                    dogCount = resultSet.getInt("count");
-                    if (!cages.isEmpty() && cageNumber == cages.peek().cageNumber)
-                        catCount = cages.pop().catCount;
-                    else
-                        catCount = 0;
-                } else {
-                    catCount = resultSet.getInt("count");
-                    if (!cages.isEmpty() && cageNumber == cages.peek().cageNumber)
-                        dogCount = cages.pop().dogCount;
-                    else
-                        dogCount = 0;
-                }
+        String query = "SELECT cageNumber, dogCount, catCount FROM CageCounts ORDER BY cageNumber";
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            QueryLog.Timer timer = queryLog.start("getCages", query);
+            PreparedStatement stmt = lease.prepare(query);
+            timer.prepared();
 
-                cages.push(new Cage(cageNumber, dogCount, catCount));
+            ArrayList<Cage> cages = new ArrayList<>();
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (next(resultSet, timer)) {
+                    cages.add(new Cage(resultSet.getInt("cageNumber"), resultSet.getInt("dogCount"), resultSet.getInt("catCount")));
+                    timer.decoded();
+                }
             }
 
+            timer.finish(lease.connection);
             return cages.toArray(new Cage[0]);
         } catch (SQLException e) {
             throw new PersistenceException("Failed to create or execute query to search for cages", e);
@@ -103,38 +314,122 @@ public class Persistence {
 
     /**
      * Retrieves an animal fron the database using its intake number as a key.
+     * <p>
+     * Animals are served from a cache when possible. The cache is invalidated by every write to the animal, so it
+     * never returns an animal that has since been committed differently.
      * 
      * @param intakeNumber the intake number of the animal
      * @return the found animal, or null if none is found
      * @throws PersistenceException when the database query fails
      */
     public Animal getAnimal(int intakeNumber) throws PersistenceException {
-        String queryString = "SELECT * FROM Animals WHERE intakeNumber = ?";
+        if (animalCache != null) {
+            Animal animal = animalCache.get(intakeNumber);
+            if (animal != null)
+                return animal;
+        }
 
-        try (PreparedStatement stmt = conn.prepareStatement(queryString)) {
-            stmt.setInt(1, intakeNumber);
+        try (ConnectionPool.Lease lease = pool.read()) {
+            return loadAnimal(lease, intakeNumber);
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to create or execute animal search statement", e);
+        }
+    }
 
-            ResultSet resultSet = stmt.executeQuery();
+    /**
+     * Reads an animal from the database, adding it to the animal cache.
+     *
+     * @param lease the lease on the connection to read with
+     * @param intakeNumber the intake number of the animal
+     * @return the animal, or null if none is found
+     * @throws SQLException when the database query fails
+     */
+    private Animal loadAnimal(ConnectionPool.Lease lease, int intakeNumber) throws SQLException {
+        long generation = animalCache != null ? animalCache.generation() : 0;
 
-            resultSet.next();
+        String query = "SELECT " + ANIMAL_COLUMNS + " FROM Animals WHERE intakeNumber = ?";
+        QueryLog.Timer timer = queryLog.start("getAnimal", query);
+        PreparedStatement stmt = lease.prepare(query);
+        timer.prepared();
+        stmt.setInt(1, intakeNumber);
 
-            if (!resultSet.isAfterLast())
-                return animalFromRow(resultSet);
-            else
-                return null;
-        } catch (SQLException e) {
-            throw new PersistenceException("Failed to create or execute animal search statement", e);
+        Animal animal = null;
+        try (ResultSet resultSet = stmt.executeQuery()) {
+            if (next(resultSet, timer)) {
+                animal = animalFromRow(resultSet);
+                timer.decoded();
+            }
         }
+        timer.finish(lease.connection);
+
+        if (animal != null && animalCache != null)
+            animalCache.put(intakeNumber, animal, generation);
+        return animal;
     }
 
     /**
      * Searches for animals in the database using a SearchQuery.
+     * <p>
+     * Results are returned one page at a time, in the order given by the query. A page holds at most the limit of
+     * the query or the configured maximum page size, whichever is smaller. The next page can be requested by
+     * passing {@link SearchCursor#after(SearchQuery.Sort, Animal)} of the last result of a full page as the
+     * query's cursor.
      * 
      * @param searchRequest the search query
-     * @return the list of found animals
-     * @throws PersistenceException when the database query fails
+     * @return the page of found animals
+     * @throws PersistenceException when the database query fails, or the cursor of the query is invalid
      */
     public Animal[] search(SearchQuery searchRequest) throws PersistenceException {
+        ArrayList<Animal> results = new ArrayList<>();
+        search(searchRequest, results::add);
+        return results.toArray(new Animal[0]);
+    }
+
+    /**
+     * Searches for animals in the database using a SearchQuery, passing each animal to a consumer.
+     * <p>
+     * The page is read in full and its connection released before the consumer receives the first result, so a
+     * consumer writing to a slow client does not hold on to a connection, which for an in-memory database is the
+     * writer.
+     * <p>
+     * The intake numbers found by recent searches are cached until the next write, so repeating a search only
+     * fetches its animals by intake number, from the animal cache when possible.
+     *
+     * @param searchRequest the search query
+     * @param consumer the consumer of the found animals
+     * @return the number of animals found
+     * @throws PersistenceException when the database query fails, or the cursor of the query is invalid
+     * @throws E when the consumer fails, in which case the search is abandoned
+     * @see #search(SearchQuery)
+     */
+    public <E extends Exception> int search(SearchQuery searchRequest, AnimalConsumer<E> consumer) throws PersistenceException, E {
+        final int pageSize = getPageSize(searchRequest);
+
+        if (columnarIndex != null) {
+            SearchCursor cursor = decodeCursor(searchRequest);
+            QueryLog.Timer timer = queryLog.start("columnarSearch", "columnar index search");
+            Animal[] page = columnarIndex.search(searchRequest, cursor, pageSize);
+            timer.executed();
+            timer.rows(page.length);
+            timer.finish(null);
+            for (Animal animal : page)
+                consumer.accept(animal);
+            return page.length;
+        }
+
+        final String cacheKey;
+        final long cacheVersion;
+        if (searchCache != null) {
+            cacheKey = SearchCache.key(searchRequest, pageSize);
+            int[] intakeNumbers = searchCache.get(cacheKey);
+            if (intakeNumbers != null)
+                return replay(intakeNumbers, consumer);
+            cacheVersion = searchCache.version();
+        } else {
+            cacheKey = null;
+            cacheVersion = 0;
+        }
+
         // LinkedLists used to build the where clause of the query
         final LinkedList<String> ands = new LinkedList<>();
         ands.push("TRUE");
@@ -152,8 +447,11 @@ public class Persistence {
         };
         final BiConsumer<String, String> like = (attrName, value) -> {
             if (value != null) {
-                // add condition text
-                ands.add(attrName + " LIKE ?");
+                // add condition text; the trigram index can only answer patterns of 3 or more characters
+                if (value.length() >= TRIGRAM_LENGTH)
+                    ands.add("intakeNumber IN (SELECT rowid FROM AnimalsText WHERE " + attrName + " LIKE ?)");
+                else
+                    ands.add(attrName + " LIKE ?");
                 // add parameters
                 parameters.add("%" + value + "%");
             }
@@ -168,15 +466,11 @@ public class Persistence {
         };
         final BiConsumer<String, String[]> has = (attrName, values) -> {
             if (values != null && values.length != 0) {
-                // add condition text
-                StringBuilder sb = new StringBuilder("(");
-                for (int i = 0; i < values.length - 1; ++i)
-                    sb.append(attrName).append(" LIKE ? OR ");
-                sb.append(attrName).append(" LIKE ?");
-                ands.add(sb.append(')').toString());
+                // add condition text; the colors are looked up through the index on AnimalColors
+                ands.add("intakeNumber IN (SELECT intakeNumber FROM AnimalColors WHERE " + attrName
+                        + " IN (" + "?,".repeat(values.length - 1) + "?))");
                 // add parameters
-                for (String value : values)
-                    parameters.add("%" + value + "%");
+                parameters.addAll(Arrays.asList(values));
             }
         };
 
@@ -197,30 +491,281 @@ public class Persistence {
         if (searchRequest.spayNeuter)
             is.accept("spayNeuter", 1);
 
-        String queryString = "SELECT * FROM Animals WHERE "
+        // continue after the cursor, in the order of the sort key
+        final SearchQuery.Sort sort = searchRequest.sortOrDefault();
+        final SearchCursor cursor = decodeCursor(searchRequest);
+        if (cursor != null) {
+            if (sort == SearchQuery.Sort.NAME && cursor.name == null)
+                // after an unnamed animal come the unnamed animals after it, then every named one
+                ands.add("(name IS NULL AND intakeNumber > ? OR name IS NOT NULL)");
+            else if (sort == SearchQuery.Sort.NAME) {
+                // unnamed animals come first, and compare as NULL here, so are never after a named one
+                ands.add("(name, intakeNumber) > (?, ?)");
+                parameters.add(cursor.name);
+            } else
+                ands.add("intakeNumber > ?");
+            parameters.add(cursor.intakeNumber);
+        }
+
+        parameters.add(pageSize);
+
+        String queryString = "SELECT " + ANIMAL_COLUMNS + " FROM Animals WHERE "
                 + String.join(" AND ", ands)
-                + " ORDER BY name";
+                + (sort == SearchQuery.Sort.NAME ? " ORDER BY name NULLS FIRST, intakeNumber" : " ORDER BY intakeNumber")
+                + " LIMIT ?";
+
+        final ArrayList<Animal> results;
+        try (ConnectionPool.Lease lease = pool.read()) {
+            // the statement is cached per query shape, i.e. per combination of present predicates
+            QueryLog.Timer timer = queryLog.start("search", queryString);
+            PreparedStatement stmt = lease.prepare(queryString);
+            timer.prepared();
 
-        try (PreparedStatement stmt = conn.prepareStatement(queryString)) {
             // set parameters
             int i = 1;
             for (Object parameter : parameters)
                 stmt.setObject(i++, parameter);
 
-            // execute query
-            ResultSet resultSet = stmt.executeQuery();
-            
-            // put results into usable format
-            ArrayList<Animal> results = new ArrayList<>();
-            while (resultSet.next())
-                results.add(animalFromRow(resultSet));
+            // execute query, reading the page before handing it over, which is bounded by the maximum page size
+            results = new ArrayList<>(Math.min(pageSize, 64));
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (next(resultSet, timer)) {
+                    results.add(animalFromRow(resultSet));
+                    timer.decoded();
+                }
+            }
+            timer.finish(lease.connection);
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to create or execute animal search statement", e);
+        }
+
+        if (searchCache != null) {
+            int[] intakeNumbers = new int[results.size()];
+            for (int i = 0; i < intakeNumbers.length; ++i)
+                intakeNumbers[i] = results.get(i).intakeNumber;
+            searchCache.put(cacheKey, intakeNumbers, cacheVersion);
+        }
+
+        for (Animal animal : results)
+            consumer.accept(animal);
+        return results.size();
+    }
+
+    /**
+     * @param searchRequest the search query
+     * @return the decoded cursor of the query, or null if it has none
+     * @throws PersistenceException when the cursor is invalid
+     */
+    private static SearchCursor decodeCursor(SearchQuery searchRequest) throws PersistenceException {
+        if (searchRequest.after == null)
+            return null;
+
+        try {
+            return SearchCursor.decode(searchRequest.after, searchRequest.sortOrDefault());
+        } catch (IllegalArgumentException e) {
+            throw new PersistenceException("Invalid search cursor", e);
+        }
+    }
 
-            return results.toArray(new Animal[0]);
+    /**
+     * Reads every animal in the database, in order of intake number, passing each animal to a consumer.
+     * <p>
+     * The animals are read in chunks of {@link #EXPORT_CHUNK_SIZE}, so memory use does not grow with the number of
+     * animals. For a file database every chunk is read on one read connection, in one read transaction, so the
+     * export is a consistent snapshot of the database while writers carry on in the meantime. An in-memory database
+     * has no connection but the writer, which cannot be held while the consumer writes to a slow client, so there
+     * each chunk is read on its own lease and handed over once the lease is released; each animal is still exported
+     * once, but an animal written while the export runs appears as of the chunk that reads it.
+     *
+     * @param consumer the consumer of the animals
+     * @return the number of animals exported
+     * @throws PersistenceException when the database query fails
+     * @throws E when the consumer fails, in which case the export is abandoned
+     */
+    public <E extends Exception> int exportAnimals(AnimalConsumer<E> consumer) throws PersistenceException, E {
+        int count = 0;
+        int lastIntakeNumber = 0;
+        ArrayList<Animal> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+
+        if (pool.isInMemory()) {
+            do {
+                try (ConnectionPool.Lease lease = pool.read()) {
+                    readChunk(lease, lastIntakeNumber, chunk);
+                }
+                for (Animal animal : chunk)
+                    consumer.accept(animal);
+                count += chunk.size();
+                if (!chunk.isEmpty())
+                    lastIntakeNumber = chunk.get(chunk.size() - 1).intakeNumber;
+            } while (chunk.size() == EXPORT_CHUNK_SIZE);
+            return count;
+        }
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            Connection conn = lease.connection;
+            try {
+                // the snapshot is taken by the first query, and kept until the transaction ends
+                conn.setAutoCommit(false);
+                do {
+                    readChunk(lease, lastIntakeNumber, chunk);
+                    for (Animal animal : chunk)
+                        consumer.accept(animal);
+                    count += chunk.size();
+                    if (!chunk.isEmpty())
+                        lastIntakeNumber = chunk.get(chunk.size() - 1).intakeNumber;
+                } while (chunk.size() == EXPORT_CHUNK_SIZE);
+            } finally {
+                // nothing was written, so ending the transaction either way only releases the snapshot
+                conn.commit();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to end animal export transaction", e);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next chunk of an export into a list, replacing its contents.
+     *
+     * @param lease the lease to read on
+     * @param lastIntakeNumber the intake number of the last animal exported so far, or 0 at the start
+     * @param chunk the list to read the animals into
+     * @throws PersistenceException when the database query fails
+     */
+    private void readChunk(ConnectionPool.Lease lease, int lastIntakeNumber, List<Animal> chunk) throws PersistenceException {
+        String query = "SELECT " + ANIMAL_COLUMNS + " FROM Animals WHERE intakeNumber > ? ORDER BY intakeNumber LIMIT ?";
+
+        chunk.clear();
+        try {
+            QueryLog.Timer timer = queryLog.start("exportAnimals", query);
+            PreparedStatement stmt = lease.prepare(query);
+            timer.prepared();
+            stmt.setInt(1, lastIntakeNumber);
+            stmt.setInt(2, EXPORT_CHUNK_SIZE);
+
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (next(resultSet, timer)) {
+                    chunk.add(animalFromRow(resultSet));
+                    timer.decoded();
+                }
+            }
+            timer.finish(lease.connection);
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to create or execute animal export statement", e);
+        }
+    }
+
+    /**
+     * Hands over the animals of a cached search. A read connection is only leased if an animal is not in the
+     * animal cache, and is released before the animals are handed over. Animals deleted since the search was cached
+     * are skipped.
+     *
+     * @param intakeNumbers the intake numbers found by the search, in order
+     * @param consumer the consumer of the found animals
+     * @return the number of animals handed over
+     */
+    private <E extends Exception> int replay(int[] intakeNumbers, AnimalConsumer<E> consumer) throws PersistenceException, E {
+        ArrayList<Animal> results = new ArrayList<>(intakeNumbers.length);
+        ConnectionPool.Lease lease = null;
+        try {
+            for (int intakeNumber : intakeNumbers) {
+                Animal animal = animalCache != null ? animalCache.get(intakeNumber) : null;
+                if (animal == null) {
+                    if (lease == null)
+                        lease = pool.read();
+                    animal = loadAnimal(lease, intakeNumber);
+                }
+
+                if (animal != null)
+                    results.add(animal);
+            }
         } catch (SQLException e) {
             throw new PersistenceException("Failed to create or execute animal search statement", e);
+        } finally {
+            if (lease != null)
+                lease.close();
+        }
+
+        for (Animal animal : results)
+            consumer.accept(animal);
+        return results.size();
+    }
+
+    /**
+     * Determines how many results a search returns at most.
+     *
+     * @param searchRequest the search query
+     * @return the limit of the query, capped at the maximum page size
+     */
+    public int getPageSize(SearchQuery searchRequest) {
+        return searchRequest.limit != null ? Math.min(searchRequest.limit, maxPageSize) : maxPageSize;
+    }
+
+    /**
+     * Suggests breeds that are similar to a fragment of a breed name, for example to autocomplete a search.
+     * <p>
+     * Breeds that start with the fragment are ranked first. Fragments of 3 or more characters are then matched by
+     * the trigrams they share with each breed, best match first, so misspelled fragments still find the intended
+     * breed; shorter fragments are matched as substrings.
+     *
+     * @param fragment the fragment of the breed name
+     * @param limit the maximum number of breeds to return
+     * @return the suggested breeds, best match first
+     * @throws PersistenceException when the database query fails
+     */
+    public String[] suggestBreeds(String fragment, int limit) throws PersistenceException {
+        String queryString;
+        String match;
+        if (fragment.length() >= TRIGRAM_LENGTH) {
+            queryString = "SELECT breed FROM AnimalsText WHERE breed MATCH ? "
+                    + "GROUP BY breed ORDER BY breed LIKE ? DESC, MIN(rank) LIMIT ?";
+            match = trigramQuery(fragment);
+        } else {
+            queryString = "SELECT breed FROM Animals WHERE breed LIKE ? "
+                    + "GROUP BY breed ORDER BY breed LIKE ? DESC, breed LIMIT ?";
+            match = "%" + fragment + "%";
+        }
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            QueryLog.Timer timer = queryLog.start("suggestBreeds", queryString);
+            PreparedStatement stmt = lease.prepare(queryString);
+            timer.prepared();
+            stmt.setString(1, match);
+            stmt.setString(2, fragment + "%");
+            stmt.setInt(3, limit);
+
+            ArrayList<String> breeds = new ArrayList<>();
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (next(resultSet, timer)) {
+                    breeds.add(resultSet.getString("breed"));
+                    timer.decoded();
+                }
+            }
+
+            timer.finish(lease.connection);
+            return breeds.toArray(new String[0]);
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to create or execute breed suggestion statement", e);
         }
     }
 
+    /**
+     * Builds a full-text query that matches any trigram of a string, e.g. {@code "she" OR "hep"} for "shep".
+     *
+     * @param s the string, at least 3 characters long
+     * @return the full-text query
+     */
+    private static String trigramQuery(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + TRIGRAM_LENGTH <= s.length(); ++i) {
+            if (i != 0)
+                sb.append(" OR ");
+            sb.append('"').append(s.substring(i, i + TRIGRAM_LENGTH).replace("\"", "\"\"")).append('"');
+        }
+        return sb.toString();
+    }
+
     /**
      * Adds an animal to the database, automatically assigning it an intake number.
      * 
@@ -229,42 +774,123 @@ public class Persistence {
      * @return the automatically assigned intake number of the animal
      */
     public int newAnimal(Animal animal) throws PersistenceException {
+        return await(newAnimalAsync(animal));
+    }
+
+    /**
+     * Queues an animal to be added to the database, automatically assigning it an intake number. The animal is
+     * committed together with the other writes queued at the same time.
+     *
+     * @param animal the animal to add to the database
+     * @return the automatically assigned intake number of the animal, once it has been committed
+     */
+    public CompletableFuture<Integer> newAnimalAsync(Animal animal) {
+        return newAnimalsAsync(List.of(animal)).thenApply(intakeNumbers -> intakeNumbers[0]);
+    }
+
+    /**
+     * Adds animals to the database, automatically assigning them intake numbers. Either every animal is added, or
+     * none are.
+     *
+     * @param animals the animals to add to the database
+     * @return the automatically assigned intake numbers of the animals, in the same order
+     * @throws PersistenceException when the database update fails
+     */
+    public int[] newAnimals(List<Animal> animals) throws PersistenceException {
+        return await(newAnimalsAsync(animals));
+    }
+
+    /**
+     * Queues animals to be added to the database, automatically assigning them intake numbers. Either every animal
+     * is added, or none are.
+     *
+     * @param animals the animals to add to the database
+     * @return the automatically assigned intake numbers of the animals, in the same order, once they have been
+     *         committed
+     */
+    public CompletableFuture<int[]> newAnimalsAsync(List<Animal> animals) {
         String query = "INSERT INTO Animals (species,vaccinated,breed,gender,name,color,weight,cageNumber,ownerCustomerId,missing,spayNeuter,size) VALUES(?,?,?,?,?,?,?,?,?,?,?,?)";
-        Object[] parameters = new Object[] {
-                animal.species.toString(),
-                animal.vaccinated ? 1 : 0,
-                animal.breed,
-                animal.gender.toString(),
-                animal.name,
-                String.join(",", Arrays.stream(animal.colors).map(Color::toString).collect(Collectors.toList())),
-                animal.weight,
-                animal.cageNumber,
-                null,
-                animal.missing ? 1 : 0,
-                animal.spayNeuter ? 1 : 0,
-                animal.size.toString(),
-        };
 
-        try (PreparedStatement prepStmt = conn.prepareStatement(query)) {
+        if (animals.isEmpty())
+            return CompletableFuture.completedFuture(new int[0]);
+
+        return writeQueue.submit(lease -> {
+            QueryLog.Timer timer = queryLog.start("newAnimals", query);
+
+            // every parameter is built before the cached statements are touched, so an invalid animal fails the
+            // write without leaving part of a batch queued on them for the next write to send
+            Object[][] rows = new Object[animals.size()][];
+            String[][] colors = new String[animals.size()][];
+            for (int i = 0; i < rows.length; ++i) {
+                Animal animal = animals.get(i);
+                colors[i] = Arrays.stream(animal.colors).map(Color::toString).toArray(String[]::new);
+                rows[i] = new Object[] {
+                        animal.species.toString(),
+                        animal.vaccinated ? 1 : 0,
+                        animal.breed,
+                        animal.gender.toString(),
+                        animal.name,
+                        String.join(",", colors[i]),
+                        animal.weight,
+                        animal.cageNumber,
+                        null,
+                        animal.missing ? 1 : 0,
+                        animal.spayNeuter ? 1 : 0,
+                        animal.size.toString(),
+                };
+            }
+
+            PreparedStatement prepStmt = lease.prepare(query);
+            timer.prepared();
+
             // make sure we're setting the right number of parameters as a sanity check
-            assert prepStmt.getParameterMetaData().getParameterCount() == parameters.length;
+            assert prepStmt.getParameterMetaData().getParameterCount() == rows[0].length;
 
-            for (int i = 0; i < parameters.length; ++i)
-                prepStmt.setObject(i + 1, parameters[i]);
+            try {
+                for (Object[] parameters : rows) {
+                    for (int i = 0; i < parameters.length; ++i)
+                        prepStmt.setObject(i + 1, parameters[i]);
+                    prepStmt.addBatch();
+                }
+                prepStmt.executeBatch();
+            } finally {
+                prepStmt.clearBatch();
+            }
 
-            if (prepStmt.executeUpdate() != 1)
-                ; // this is bad D:
-            
-            // get the automatically-assigned intake number of the animal
-            Statement stmt = conn.createStatement();
-            ResultSet resultSet = stmt.executeQuery("SELECT last_insert_rowid() AS intakeNumber");
-            resultSet.next();
-            int intakeNumber = resultSet.getInt("intakeNumber");
+            // get the automatically-assigned intake numbers; the transaction holds the only writer, so the
+            // intake numbers of the batch are consecutive and end at the last inserted one
+            int lastIntakeNumber;
+            try (ResultSet resultSet = lease.prepare("SELECT last_insert_rowid() AS intakeNumber").executeQuery()) {
+                resultSet.next();
+                lastIntakeNumber = resultSet.getInt("intakeNumber");
+            }
 
-            return intakeNumber;
-        } catch (SQLException e) {
-            throw new PersistenceException("Failed to update animal", e);
-        }
+            int[] assigned = new int[animals.size()];
+            for (int i = 0; i < assigned.length; ++i)
+                assigned[i] = lastIntakeNumber - assigned.length + 1 + i;
+
+            PreparedStatement colorStmt = lease.prepare("INSERT OR IGNORE INTO AnimalColors (intakeNumber, color) VALUES (?, ?)");
+            try {
+                for (int i = 0; i < assigned.length; ++i)
+                    addColors(colorStmt, assigned[i], colors[i]);
+                colorStmt.executeBatch();
+            } finally {
+                colorStmt.clearBatch();
+            }
+
+            timer.executed();
+            timer.rows(assigned.length);
+            timer.finish(lease.connection);
+            return assigned;
+        }, assigned -> {
+            for (int i = 0; i < assigned.length; ++i) {
+                Animal animal = withIntakeNumber(animals.get(i), assigned[i]);
+                if (columnarIndex != null)
+                    columnarIndex.put(animal);
+                invalidate(assigned[i]);
+                notifyListeners(new AnimalChange(AnimalChange.Kind.CREATED, assigned[i], animal, 0, null));
+            }
+        }, "Failed to add animal");
     }
 
     /**
@@ -276,6 +902,18 @@ public class Persistence {
      * @throws PersistenceException
      */
     public boolean updateAnimal(int intakeNumber, Animal animal) throws PersistenceException {
+        return await(updateAnimalAsync(intakeNumber, animal));
+    }
+
+    /**
+     * Queues an update of an animal in the database, using an intake number as the key. The update is committed
+     * together with the other writes queued at the same time.
+     *
+     * @param intakeNumber the intake number of the animal to update
+     * @param animal the new animal data to be stored in the corresponding row of the database table
+     * @return whether or not an animal was updated, once the update has been committed
+     */
+    public CompletableFuture<Boolean> updateAnimalAsync(int intakeNumber, Animal animal) {
         String query = "UPDATE Animals SET " +
                 "species = ?," +
                 "breed = ?," +
@@ -304,17 +942,41 @@ public class Persistence {
                 intakeNumber,
         };
 
-        try (PreparedStatement prepStmt = conn.prepareStatement(query)) {
+        return writeQueue.submit(lease -> {
+            Placement previous = previous(lease, intakeNumber);
+            QueryLog.Timer timer = queryLog.start("updateAnimal", query);
+            PreparedStatement prepStmt = lease.prepare(query);
+            timer.prepared();
+
             // make sure we're setting the right number of parameters as a sanity check
             assert prepStmt.getParameterMetaData().getParameterCount() == parameters.length;
 
             for (int i = 0; i < parameters.length; ++i)
                 prepStmt.setObject(i + 1, parameters[i]);
 
-            return prepStmt.executeUpdate() != 0;
-        } catch (SQLException e) {
-            throw new PersistenceException("Failed to update animal", e);
-        }
+            int rows = prepStmt.executeUpdate();
+            if (rows != 0) {
+                PreparedStatement deleteColors = lease.prepare("DELETE FROM AnimalColors WHERE intakeNumber = ?");
+                deleteColors.setInt(1, intakeNumber);
+                deleteColors.executeUpdate();
+                insertColors(lease, intakeNumber, animal.colors);
+            }
+
+            timer.executed();
+            timer.rows(rows);
+            timer.finish(lease.connection);
+            return rows != 0
+                    ? new AnimalChange(AnimalChange.Kind.UPDATED, intakeNumber, withIntakeNumber(animal, intakeNumber),
+                            previous != null ? previous.cageNumber : 0, previous != null ? previous.species : null)
+                    : null;
+        }, change -> {
+            if (change != null) {
+                if (columnarIndex != null)
+                    columnarIndex.put(change.animal);
+                invalidate(intakeNumber);
+                notifyListeners(change);
+            }
+        }, "Failed to update animal").thenApply(Objects::nonNull);
     }
 
     /**
@@ -325,40 +987,371 @@ public class Persistence {
      * @return whether or not an animal was deleted
      */
     public boolean deleteAnimal(int intakeNumber) throws PersistenceException {
+        return await(deleteAnimalAsync(intakeNumber));
+    }
+
+    /**
+     * Queues the removal of an animal from the database, using its intake number as a key. The removal is
+     * committed together with the other writes queued at the same time.
+     *
+     * @param intakeNumber the intake number of the animal to remove
+     * @return whether or not an animal was deleted, once the removal has been committed
+     */
+    public CompletableFuture<Boolean> deleteAnimalAsync(int intakeNumber) {
         String query = "DELETE FROM Animals WHERE intakeNumber = ?";
 
-        try (PreparedStatement prepStmt = conn.prepareStatement(query)) {
+        return writeQueue.submit(lease -> {
+            Placement previous = previous(lease, intakeNumber);
+            QueryLog.Timer timer = queryLog.start("deleteAnimal", query);
+            PreparedStatement prepStmt = lease.prepare(query);
+            timer.prepared();
             prepStmt.setInt(1, intakeNumber);
 
-            return prepStmt.executeUpdate() != 0;
-        } catch (SQLException e) {
-            throw new PersistenceException("Failed to euthanize animal", e);
+            int rows = prepStmt.executeUpdate();
+            timer.executed();
+            timer.rows(rows);
+            timer.finish(lease.connection);
+            return rows != 0
+                    ? new AnimalChange(AnimalChange.Kind.DELETED, intakeNumber, null,
+                            previous != null ? previous.cageNumber : 0, previous != null ? previous.species : null)
+                    : null;
+        }, change -> {
+            if (change != null) {
+                if (columnarIndex != null)
+                    columnarIndex.remove(intakeNumber);
+                invalidate(intakeNumber);
+                notifyListeners(change);
+            }
+        }, "Failed to euthanize animal").thenApply(Objects::nonNull);
+    }
+
+    /**
+     * Waits for a queued write to be committed.
+     *
+     * @param write the future result of the write
+     * @return the result of the write
+     * @throws PersistenceException when the write failed, or was not committed within the write timeout, in which
+     *                              case it may still be committed later, or the wait was interrupted
+     */
+    private <T> T await(CompletableFuture<T> write) throws PersistenceException {
+        try {
+            return write.get(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new PersistenceException("Timed out waiting for a write to be committed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Interrupted while waiting for a write to be committed", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            // rethrown so that the stack trace shows the caller, as the write ran on the writer thread
+            throw new PersistenceException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Drops an animal and every search result from the caches once a write to it has been committed. Runs on the
+     * writer thread while the writer connection is still leased.
+     *
+     * @param intakeNumber the intake number of the animal that was written
+     */
+    private void invalidate(int intakeNumber) {
+        if (animalCache != null)
+            animalCache.invalidate(intakeNumber);
+        if (searchCache != null)
+            searchCache.invalidateAll();
+    }
+
+    /**
+     * Reads the cage and species of an animal before it is written, for the listeners to tell where it came from.
+     * Skipped while no listener is registered.
+     *
+     * @param lease the lease on the writer connection
+     * @param intakeNumber the intake number of the animal
+     * @return the cage and species of the animal, or null if there are no listeners or no animal
+     * @throws SQLException when the query fails
+     */
+    private Placement previous(ConnectionPool.Lease lease, int intakeNumber) throws SQLException {
+        if (listeners.isEmpty())
+            return null;
+
+        PreparedStatement stmt = lease.prepare("SELECT cageNumber, species FROM Animals WHERE intakeNumber = ?");
+        stmt.setInt(1, intakeNumber);
+        try (ResultSet resultSet = stmt.executeQuery()) {
+            if (!resultSet.next())
+                return null;
+            return new Placement(resultSet.getInt(1), Species.fromString(resultSet.getString(2)));
+        }
+    }
+
+    /**
+     * Where an animal was before a write.
+     */
+    private static final class Placement {
+        final int cageNumber;
+        final Species species;
+
+        Placement(int cageNumber, Species species) {
+            this.cageNumber = cageNumber;
+            this.species = species;
+        }
+    }
+
+    /**
+     * Passes a committed change to every listener, logging rather than propagating their failures so that one
+     * listener cannot keep the others, or the writer, from going on.
+     */
+    private void notifyListeners(AnimalChange change) {
+        for (AnimalChange.Listener listener : listeners) {
+            try {
+                listener.changed(change);
+            } catch (RuntimeException e) {
+                logger.error("Change listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Adds the colors of an animal to the AnimalColors table.
+     *
+     * @param lease the lease on the writer connection
+     * @param intakeNumber the intake number of the animal
+     * @param colors the colors of the animal
+     * @throws SQLException when the insertion fails
+     */
+    private static void insertColors(ConnectionPool.Lease lease, int intakeNumber, Color[] colors) throws SQLException {
+        String[] names = Arrays.stream(colors).map(Color::toString).toArray(String[]::new);
+        PreparedStatement stmt = lease.prepare("INSERT OR IGNORE INTO AnimalColors (intakeNumber, color) VALUES (?, ?)");
+        try {
+            addColors(stmt, intakeNumber, names);
+            stmt.executeBatch();
+        } finally {
+            stmt.clearBatch();
+        }
+    }
+
+    /**
+     * Adds the colors of an animal to a batch of insertions into the AnimalColors table. The caller clears the
+     * batch if it is not executed, as the statement is cached.
+     */
+    private static void addColors(PreparedStatement stmt, int intakeNumber, String[] colors) throws SQLException {
+        for (String color : colors) {
+            stmt.setInt(1, intakeNumber);
+            stmt.setString(2, color);
+            stmt.addBatch();
         }
     }
 
     /**
-     * Constructs an animal from a row of the Animals table.
+     * Advances to the next row of a result set, timing the step as part of executing the statement.
+     *
+     * @return whether there is another row
+     */
+    private static boolean next(ResultSet resultSet, QueryLog.Timer timer) throws SQLException {
+        boolean next = resultSet.next();
+        timer.executed();
+        return next;
+    }
+
+    /**
+     * @return a copy of an animal with the given intake number
+     */
+    private static Animal withIntakeNumber(Animal animal, int intakeNumber) {
+        return new Animal(intakeNumber, animal.cageNumber, animal.species, animal.breed, animal.size, animal.colors,
+                animal.gender, animal.weight, animal.vaccinated, animal.spayNeuter, animal.name, animal.missing);
+    }
+
+    /**
+     * Constructs an animal from a row of the Animals table, selected as {@link #ANIMAL_COLUMNS}.
+     * <p>
+     * Columns are read by position and the animal is constructed directly, without boxing every field through a
+     * Builder. Rows with the same color list share one colors array, and rows with the same breed share one breed
+     * string, so materializing many rows allocates little more than the animals and their names.
      * 
      * @param resultSet the result set, positioned at the row that data should be retrieved from
      * @return the constructed animal
      * @throws SQLException when a field could not be found
      */
-    private static Animal animalFromRow(ResultSet resultSet) throws SQLException {
-        return new Animal.Builder()
-                .intakeNumber(resultSet.getInt("intakeNumber"))
-                .cageNumber(resultSet.getInt("cageNumber"))
-                .species(Species.fromString(resultSet.getString("species")))
-                .breed(resultSet.getString("breed"))
-                .size(Size.fromString(resultSet.getString("size")))
-                .colors(Arrays.stream(resultSet.getString("color").split(","))
-                        .map(Color::fromString)
-                        .toArray(Color[]::new))
-                .gender(Gender.fromString(resultSet.getString("gender")))
-                .weight(resultSet.getDouble("weight"))
-                .vaccinated(resultSet.getInt("vaccinated") != 0)
-                .spayNeuter(resultSet.getInt("spayNeuter") != 0)
-                .name(resultSet.getString("name"))
-                .missing(resultSet.getInt("missing") != 0)
-                .build();
+    private Animal animalFromRow(ResultSet resultSet) throws SQLException {
+        return new Animal(
+                resultSet.getInt(1),
+                resultSet.getInt(2),
+                Species.fromString(resultSet.getString(3)),
+                breed(resultSet.getString(4)),
+                Size.fromString(resultSet.getString(5)),
+                colors(resultSet.getString(6)),
+                Gender.fromString(resultSet.getString(7)),
+                resultSet.getDouble(8),
+                resultSet.getInt(9) != 0,
+                resultSet.getInt(10) != 0,
+                resultSet.getString(11),
+                resultSet.getInt(12) != 0);
+    }
+
+    /**
+     * @param column the comma-separated colors of the color column
+     * @return the colors, shared with every other animal with the same color column while the dictionary has room
+     */
+    private Color[] colors(String column) {
+        Color[] colors = colorLists.get(column);
+        if (colors != null)
+            return colors;
+
+        colors = Arrays.stream(column.split(","))
+                .map(Color::fromString)
+                .toArray(Color[]::new);
+        // keyed by the column as written, so the same colors in another order or case take another entry
+        if (colorLists.size() < MAX_COLOR_LISTS) {
+            Color[] shared = colorLists.putIfAbsent(column, colors);
+            return shared != null ? shared : colors;
+        }
+        return colors;
+    }
+
+    /**
+     * @param breed the breed column
+     * @return the breed, shared with every other animal of the same breed while the dictionary has room
+     */
+    private String breed(String breed) {
+        if (breed == null)
+            return null;
+
+        String shared = breeds.get(breed);
+        if (shared != null)
+            return shared;
+
+        if (breeds.size() < MAX_BREEDS) {
+            shared = breeds.putIfAbsent(breed, breed);
+            return shared != null ? shared : breed;
+        }
+        return breed;
+    }
+
+    public static final class Configuration {
+        /**
+         * The database filename to give to SQLite, or ":memory:" for an in-memory DB.
+         */
+        public final String database;
+        /**
+         * The path of a database file, saved by {@link Persistence#saveSnapshot(String)}, to copy into the database
+         * if it is empty, or null to fill an empty database with the sample data instead.
+         */
+        public final String snapshot;
+        /**
+         * The number of connections used for reading. In-memory databases always use a single connection.
+         */
+        public final int readConnections;
+        /**
+         * How long to wait for a connection before failing with a PersistenceException.
+         */
+        public final long connectionTimeoutMillis;
+        /**
+         * The maximum number of prepared statements cached per connection. At least 1, as the statements handed out
+         * belong to the cache, so there is no way to use a statement without caching it.
+         */
+        public final int statementCacheSize;
+        /**
+         * The maximum number of animals returned by one search.
+         */
+        public final int maxPageSize;
+        /**
+         * The maximum number of animals kept in the cache in front of {@link Persistence#getAnimal(int)}, or 0 to
+         * disable the cache.
+         */
+        public final int animalCacheSize;
+        /**
+         * How long an animal stays in the cache after being loaded from the database.
+         */
+        public final long animalCacheTtlMillis;
+        /**
+         * The maximum number of searches whose results are cached, or 0 to disable the cache.
+         */
+        public final int searchCacheSize;
+        /**
+         * Whether searches are answered from bitmap indexes over an in-memory copy of the animals instead of by
+         * SQLite, trading memory and startup time for faster searches.
+         */
+        public final boolean columnarSearch;
+        /**
+         * The time from which an operation is logged as slow, with its SQL and query plan, or a negative number to
+         * log no operations. Every operation is timed either way.
+         */
+        public final long slowQueryMillis;
+        /**
+         * The maximum number of writes committed in one transaction.
+         */
+        public final int writeBatchSize;
+        /**
+         * How long to wait for more writes to commit together once a write is queued. Writes queued while a
+         * transaction commits are always committed together, so this only needs to be raised when writers are
+         * too few to keep the writer busy.
+         */
+        public final long writeDelayMillis;
+        /**
+         * The maximum number of writes waiting to be committed; further writes fail at once until there is room.
+         */
+        public final int writeQueueCapacity;
+        /**
+         * How long the synchronous write methods wait for their write to be committed before failing.
+         */
+        public final long writeTimeoutMillis;
+
+        private Configuration(Builder b) {
+            if (b.statementCacheSize < 1)
+                throw new IllegalArgumentException("The statement cache size must be at least 1");
+
+            database = b.database;
+            snapshot = b.snapshot;
+            readConnections = b.readConnections;
+            connectionTimeoutMillis = b.connectionTimeoutMillis;
+            statementCacheSize = b.statementCacheSize;
+            maxPageSize = b.maxPageSize;
+            animalCacheSize = b.animalCacheSize;
+            animalCacheTtlMillis = b.animalCacheTtlMillis;
+            searchCacheSize = b.searchCacheSize;
+            columnarSearch = b.columnarSearch;
+            slowQueryMillis = b.slowQueryMillis;
+            writeBatchSize = b.writeBatchSize;
+            writeDelayMillis = b.writeDelayMillis;
+            writeQueueCapacity = b.writeQueueCapacity;
+            writeTimeoutMillis = b.writeTimeoutMillis;
+        }
+
+        public static class Builder {
+            private String database = ":memory:";
+            private String snapshot;
+            private int readConnections = Runtime.getRuntime().availableProcessors();
+            private long connectionTimeoutMillis = 5000;
+            private int statementCacheSize = 64;
+            private int maxPageSize = 500;
+            private int animalCacheSize = 1024;
+            private long animalCacheTtlMillis = 60_000;
+            private int searchCacheSize = 256;
+            private boolean columnarSearch = false;
+            private long slowQueryMillis = 100;
+            private int writeBatchSize = 64;
+            private long writeDelayMillis = 0;
+            private int writeQueueCapacity = 1024;
+            private long writeTimeoutMillis = 30_000;
+
+            public Builder() {}
+            public Configuration build() { return new Configuration(this); }
+            public Builder database(String database) { this.database = database; return this; }
+            public Builder snapshot(String snapshot) { this.snapshot = snapshot; return this; }
+            public Builder readConnections(int readConnections) { this.readConnections = readConnections; return this; }
+            public Builder connectionTimeoutMillis(long connectionTimeoutMillis) { this.connectionTimeoutMillis = connectionTimeoutMillis; return this; }
+            public Builder statementCacheSize(int statementCacheSize) { this.statementCacheSize = statementCacheSize; return this; }
+            public Builder maxPageSize(int maxPageSize) { this.maxPageSize = maxPageSize; return this; }
+            public Builder animalCacheSize(int animalCacheSize) { this.animalCacheSize = animalCacheSize; return this; }
+            public Builder animalCacheTtlMillis(long animalCacheTtlMillis) { this.animalCacheTtlMillis = animalCacheTtlMillis; return this; }
+            public Builder searchCacheSize(int searchCacheSize) { this.searchCacheSize = searchCacheSize; return this; }
+            public Builder columnarSearch(boolean columnarSearch) { this.columnarSearch = columnarSearch; return this; }
+            public Builder slowQueryMillis(long slowQueryMillis) { this.slowQueryMillis = slowQueryMillis; return this; }
+            public Builder writeBatchSize(int writeBatchSize) { this.writeBatchSize = writeBatchSize; return this; }
+            public Builder writeDelayMillis(long writeDelayMillis) { this.writeDelayMillis = writeDelayMillis; return this; }
+            public Builder writeQueueCapacity(int writeQueueCapacity) { this.writeQueueCapacity = writeQueueCapacity; return this; }
+            public Builder writeTimeoutMillis(long writeTimeoutMillis) { this.writeTimeoutMillis = writeTimeoutMillis; return this; }
+        }
     }
 }
@@ -0,0 +1,185 @@
+package cs340.getpet.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aggregates the timings of {@link Persistence} operations by operation, and logs operations that take at least a
+ * threshold along with their SQL and SQLite's query plan for it.
+ * <p>
+ * Each operation is timed by a {@link Timer}, which splits the time between consecutive calls into phases, so an
+ * operation costs a couple of clock reads per phase and the aggregation a few counter increments.
+ */
+final class QueryLog {
+    private static final Logger logger = LoggerFactory.getLogger(QueryLog.class);
+
+    private final long slowNanos;
+    private final ConcurrentSkipListMap<String, Counters> operations = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param slowQueryMillis the time from which operations are logged as slow, or a negative number to log none
+     */
+    QueryLog(long slowQueryMillis) {
+        this.slowNanos = slowQueryMillis >= 0 ? slowQueryMillis * 1_000_000 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @param operation the name of the operation
+     * @param sql the SQL of the statement that the operation runs, or a description of the operation if it runs
+     *            none, as written to the slow query log
+     * @return the timer, in its prepare phase
+     */
+    Timer start(String operation, String sql) {
+        return new Timer(operation, sql);
+    }
+
+    /**
+     * @return a snapshot of the timings of every operation that has completed, sorted by operation
+     */
+    QueryStats[] stats() {
+        return operations.values().stream()
+                .map(Counters::snapshot)
+                .toArray(QueryStats[]::new);
+    }
+
+    private void finish(Timer timer, Connection connection) {
+        Counters counters = operations.get(timer.operation);
+        if (counters == null)
+            counters = operations.computeIfAbsent(timer.operation, Counters::new);
+
+        long total = timer.prepareNanos + timer.executeNanos + timer.decodeNanos;
+        boolean slow = total >= slowNanos;
+        counters.record(timer, total, slow);
+
+        if (slow && logger.isWarnEnabled())
+            logger.warn(String.format("Slow %s took %.3f ms (prepare %.3f ms, execute %.3f ms, decode %.3f ms), %d rows: %s",
+                    timer.operation, total / 1e6, timer.prepareNanos / 1e6, timer.executeNanos / 1e6, timer.decodeNanos / 1e6,
+                    timer.rows, timer.sql) + (connection != null ? explain(connection, timer.sql) : ""));
+    }
+
+    /**
+     * Describes how SQLite runs a statement, as an indented tree of the steps given by {@code EXPLAIN QUERY PLAN}.
+     * Parameters are left unbound, which does not affect the plan.
+     */
+    private static String explain(Connection connection, String sql) {
+        StringBuilder sb = new StringBuilder();
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            sb.append("\n").append(stmt.getParameterMetaData().getParameterCount()).append(" parameters, query plan:");
+
+            Map<Integer, Integer> depths = new HashMap<>();
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    int depth = depths.getOrDefault(resultSet.getInt("parent"), -1) + 1;
+                    depths.put(resultSet.getInt("id"), depth);
+                    sb.append("\n  ").append("  ".repeat(depth)).append(resultSet.getString("detail"));
+                }
+            }
+        } catch (SQLException e) {
+            sb.append("\nquery plan unavailable: ").append(e.getMessage());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Times one operation. A timer is only used by the thread running the operation.
+     * <p>
+     * Each of {@link #prepared()}, {@link #executed()} and {@link #decoded()} adds the time since the previous call
+     * to its phase.
+     */
+    final class Timer {
+        private final String operation;
+        private final String sql;
+        private long last = System.nanoTime();
+        private long prepareNanos;
+        private long executeNanos;
+        private long decodeNanos;
+        private long rows;
+
+        private Timer(String operation, String sql) {
+            this.operation = operation;
+            this.sql = sql;
+        }
+
+        private long lap() {
+            long now = System.nanoTime();
+            long elapsed = now - last;
+            last = now;
+            return elapsed;
+        }
+
+        void prepared() {
+            prepareNanos += lap();
+        }
+
+        void executed() {
+            executeNanos += lap();
+        }
+
+        void decoded() {
+            decodeNanos += lap();
+            ++rows;
+        }
+
+        /**
+         * Counts rows that were written or read without being decoded.
+         *
+         * @param rows the number of rows
+         */
+        void rows(long rows) {
+            this.rows += rows;
+        }
+
+        /**
+         * Records the operation, logging it if it was slow.
+         *
+         * @param connection the connection that the operation ran on, still leased, to explain the statement with,
+         *            or null if it ran no statement
+         */
+        void finish(Connection connection) {
+            QueryLog.this.finish(this, connection);
+        }
+    }
+
+    private static final class Counters {
+        final String operation;
+        final LongAdder count = new LongAdder();
+        final LongAdder slowCount = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder prepareNanos = new LongAdder();
+        final LongAdder executeNanos = new LongAdder();
+        final LongAdder decodeNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Counters(String operation) {
+            this.operation = operation;
+        }
+
+        void record(Timer timer, long total, boolean slow) {
+            count.increment();
+            if (slow)
+                slowCount.increment();
+            rows.add(timer.rows);
+            prepareNanos.add(timer.prepareNanos);
+            executeNanos.add(timer.executeNanos);
+            decodeNanos.add(timer.decodeNanos);
+            maxNanos.accumulate(total);
+        }
+
+        QueryStats snapshot() {
+            return new QueryStats(operation, count.sum(), slowCount.sum(), rows.sum(), prepareNanos.sum(),
+                    executeNanos.sum(), decodeNanos.sum(), maxNanos.get());
+        }
+    }
+}
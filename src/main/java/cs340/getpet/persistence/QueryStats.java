@@ -0,0 +1,68 @@
+package cs340.getpet.persistence;
+
+/**
+ * A point-in-time snapshot of the timings of one kind of {@link Persistence} operation.
+ * <p>
+ * The time of an operation is split into preparing its statement, executing it, which includes binding parameters
+ * and stepping through the rows, and decoding the rows into objects. Time spent by the consumers of streaming
+ * operations is not included.
+ */
+public final class QueryStats {
+    /**
+     * The name of the operation, e.g. "search".
+     */
+    public final String operation;
+    /**
+     * The number of operations that completed.
+     */
+    public final long count;
+    /**
+     * The number of operations that took at least the slow query threshold.
+     */
+    public final long slowCount;
+    /**
+     * The number of rows read or written by the operations.
+     */
+    public final long rows;
+    /**
+     * The time spent preparing statements, in nanoseconds.
+     */
+    public final long prepareNanos;
+    /**
+     * The time spent executing statements and stepping through their rows, in nanoseconds.
+     */
+    public final long executeNanos;
+    /**
+     * The time spent decoding rows, in nanoseconds.
+     */
+    public final long decodeNanos;
+    /**
+     * The time taken by the slowest operation, in nanoseconds.
+     */
+    public final long maxNanos;
+
+    public QueryStats(String operation, long count, long slowCount, long rows, long prepareNanos, long executeNanos, long decodeNanos, long maxNanos) {
+        this.operation = operation;
+        this.count = count;
+        this.slowCount = slowCount;
+        this.rows = rows;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.decodeNanos = decodeNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return the total time taken by the operations, in nanoseconds
+     */
+    public long totalNanos() {
+        return prepareNanos + executeNanos + decodeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStats[operation=" + operation + ", count=" + count + ", slowCount=" + slowCount + ", rows=" + rows
+                + ", prepareNanos=" + prepareNanos + ", executeNanos=" + executeNanos + ", decodeNanos=" + decodeNanos
+                + ", maxNanos=" + maxNanos + "]";
+    }
+}
@@ -0,0 +1,122 @@
+package cs340.getpet.persistence;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the database schema up to date.
+ * <p>
+ * The version of the schema is stored in SQLite's {@code user_version} pragma. Version 0 is the layout created by
+ * {@code sample-db-create.sql}; each entry of {@link #MIGRATIONS} upgrades the schema by one version and is applied
+ * in a single transaction.
+ */
+final class Schema {
+    private Schema() {}
+
+    // counts an animal in its new cage, or removes it from its old cage and forgets the cage once it is empty
+    private static final String CAGE_ENTER = "INSERT INTO CageCounts (cageNumber, dogCount, catCount) "
+            + "VALUES (new.cageNumber, new.species = 'dog', new.species <> 'dog') "
+            + "ON CONFLICT (cageNumber) DO UPDATE SET "
+            + "dogCount = dogCount + excluded.dogCount, catCount = catCount + excluded.catCount; ";
+    private static final String CAGE_LEAVE = "UPDATE CageCounts SET "
+            + "dogCount = dogCount - (old.species = 'dog'), catCount = catCount - (old.species <> 'dog') "
+            + "WHERE cageNumber = old.cageNumber; "
+            + "DELETE FROM CageCounts WHERE cageNumber = old.cageNumber AND dogCount = 0 AND catCount = 0; ";
+
+    private static final String[][] MIGRATIONS = {
+        // 1: indexes for the search filters, and colors normalized into their own table
+        {
+            "CREATE TABLE IF NOT EXISTS AnimalColors ("
+                    + "intakeNumber INTEGER NOT NULL, "
+                    + "color TEXT NOT NULL, "
+                    + "PRIMARY KEY (intakeNumber, color)"
+                    + ") WITHOUT ROWID",
+            "CREATE INDEX IF NOT EXISTS AnimalColors_color ON AnimalColors (color, intakeNumber)",
+            "CREATE INDEX IF NOT EXISTS Animals_species_gender_size ON Animals (species, gender, size)",
+            "CREATE INDEX IF NOT EXISTS Animals_cageNumber_species ON Animals (cageNumber, species)",
+            "CREATE INDEX IF NOT EXISTS Animals_vaccinated_spayNeuter ON Animals (vaccinated, spayNeuter)",
+            "CREATE INDEX IF NOT EXISTS Animals_name ON Animals (name, intakeNumber)",
+            "CREATE TRIGGER IF NOT EXISTS Animals_delete_colors AFTER DELETE ON Animals BEGIN "
+                    + "DELETE FROM AnimalColors WHERE intakeNumber = old.intakeNumber; "
+                    + "END",
+            // split the comma-separated color column of existing rows
+            "WITH RECURSIVE split(intakeNumber, color, rest) AS ("
+                    + "SELECT intakeNumber, '', color || ',' FROM Animals "
+                    + "UNION ALL "
+                    + "SELECT intakeNumber, substr(rest, 1, instr(rest, ',') - 1), substr(rest, instr(rest, ',') + 1) "
+                    + "FROM split WHERE rest <> ''"
+                    + ") "
+                    + "INSERT OR IGNORE INTO AnimalColors (intakeNumber, color) "
+                    + "SELECT intakeNumber, color FROM split WHERE color <> ''",
+        },
+        // 2: trigram full-text index over breed and name, kept in sync with Animals by triggers
+        {
+            "CREATE VIRTUAL TABLE IF NOT EXISTS AnimalsText USING fts5("
+                    + "breed, name, content='Animals', content_rowid='intakeNumber', tokenize='trigram')",
+            "CREATE TRIGGER IF NOT EXISTS Animals_text_insert AFTER INSERT ON Animals BEGIN "
+                    + "INSERT INTO AnimalsText (rowid, breed, name) VALUES (new.intakeNumber, new.breed, new.name); "
+                    + "END",
+            "CREATE TRIGGER IF NOT EXISTS Animals_text_delete AFTER DELETE ON Animals BEGIN "
+                    + "INSERT INTO AnimalsText (AnimalsText, rowid, breed, name) VALUES ('delete', old.intakeNumber, old.breed, old.name); "
+                    + "END",
+            "CREATE TRIGGER IF NOT EXISTS Animals_text_update AFTER UPDATE OF breed, name ON Animals BEGIN "
+                    + "INSERT INTO AnimalsText (AnimalsText, rowid, breed, name) VALUES ('delete', old.intakeNumber, old.breed, old.name); "
+                    + "INSERT INTO AnimalsText (rowid, breed, name) VALUES (new.intakeNumber, new.breed, new.name); "
+                    + "END",
+            "INSERT INTO AnimalsText (AnimalsText) VALUES ('rebuild')",
+        },
+        // 3: occupancy of each cage, kept up to date by triggers so that listing cages needs no aggregation
+        {
+            "CREATE TABLE IF NOT EXISTS CageCounts ("
+                    + "cageNumber INTEGER NOT NULL PRIMARY KEY, "
+                    + "dogCount INTEGER NOT NULL, "
+                    + "catCount INTEGER NOT NULL"
+                    + ")",
+            "CREATE TRIGGER IF NOT EXISTS Animals_cage_insert AFTER INSERT ON Animals BEGIN "
+                    + CAGE_ENTER
+                    + "END",
+            "CREATE TRIGGER IF NOT EXISTS Animals_cage_delete AFTER DELETE ON Animals BEGIN "
+                    + CAGE_LEAVE
+                    + "END",
+            "CREATE TRIGGER IF NOT EXISTS Animals_cage_update AFTER UPDATE OF cageNumber, species ON Animals BEGIN "
+                    + CAGE_LEAVE
+                    + CAGE_ENTER
+                    + "END",
+            "INSERT INTO CageCounts (cageNumber, dogCount, catCount) "
+                    + "SELECT cageNumber, SUM(species = 'dog'), SUM(species <> 'dog') FROM Animals GROUP BY cageNumber",
+        },
+    };
+
+    /**
+     * Applies every migration newer than the version of the database.
+     *
+     * @param conn the connection to migrate the database of
+     * @throws SQLException when a migration fails, in which case that migration is rolled back
+     */
+    static void migrate(Connection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.createStatement();
+                ResultSet resultSet = stmt.executeQuery("PRAGMA user_version")) {
+            resultSet.next();
+            version = resultSet.getInt(1);
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (; version < MIGRATIONS.length; ++version) {
+                for (String sql : MIGRATIONS[version])
+                    stmt.execute(sql);
+                stmt.execute("PRAGMA user_version = " + (version + 1));
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
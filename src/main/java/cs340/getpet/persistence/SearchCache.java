@@ -0,0 +1,133 @@
+package cs340.getpet.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the intake numbers found by searches, keyed by a canonical form of the
+ * search query.
+ * <p>
+ * Any write to the animals can change the results of any search, so rather than tracking which searches a write
+ * affects, every write bumps a version and entries cached under an older version are treated as misses. Results are
+ * tagged with the {@link #version()} taken before querying, and {@link #put(String, int[], long)} discards results
+ * that a write may have overtaken.
+ */
+final class SearchCache {
+    private final int maxSize;
+    private final CacheStats.Counters counters = new CacheStats.Counters();
+    private final LinkedHashMap<String, Cached> entries;
+    private long version;
+
+    /**
+     * @param maxSize the maximum number of cached searches
+     */
+    SearchCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                if (size() <= SearchCache.this.maxSize)
+                    return false;
+
+                counters.evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Builds the key of a search. Queries that only differ in the order or repetition of their genders, colors or
+     * sizes, or in using null instead of an empty array, get the same key.
+     *
+     * @param query the search query
+     * @param pageSize the number of results the search returns at most
+     * @return the key
+     */
+    static String key(SearchQuery query, int pageSize) {
+        StringBuilder sb = new StringBuilder()
+                .append(query.species != null ? query.species.ordinal() : -1).append('|')
+                .append(ordinals(query.genders)).append('|')
+                .append(ordinals(query.colors)).append('|')
+                .append(ordinals(query.sizes)).append('|')
+                .append(query.cageNumber).append('|')
+                .append(query.vaccinated ? 1 : 0).append(query.spayNeuter ? 1 : 0).append('|')
+                .append(query.sortOrDefault().ordinal()).append('|')
+                .append(pageSize).append('|')
+                .append(query.after).append('|');
+        // the breed goes last since it may contain any character
+        if (query.breed != null)
+            sb.append('=').append(query.breed);
+        return sb.toString();
+    }
+
+    /**
+     * @return a bit set of the ordinals of the values
+     */
+    private static long ordinals(Enum<?>[] values) {
+        long bits = 0;
+        if (values != null)
+            for (Enum<?> value : values)
+                bits |= 1L << value.ordinal();
+        return bits;
+    }
+
+    /**
+     * Gets the results of a search, counting the lookup as a hit or a miss.
+     *
+     * @param key the {@link #key(SearchQuery, int)} of the search
+     * @return the intake numbers found by the search, in order, or null if they are not cached or out of date
+     */
+    synchronized int[] get(String key) {
+        Cached entry = entries.get(key);
+        if (entry == null || entry.version != version) {
+            counters.misses.increment();
+            return null;
+        }
+
+        counters.hits.increment();
+        return entry.intakeNumbers;
+    }
+
+    /**
+     * @return the current version, to be passed to {@link #put(String, int[], long)} after running a search
+     */
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Caches the results of a search, unless there has been a write since the search started.
+     *
+     * @param key the {@link #key(SearchQuery, int)} of the search
+     * @param intakeNumbers the intake numbers found by the search, in order
+     * @param version the {@link #version()} taken before running the search
+     */
+    synchronized void put(String key, int[] intakeNumbers, long version) {
+        if (version == this.version)
+            entries.put(key, new Cached(intakeNumbers, version));
+    }
+
+    /**
+     * Marks every cached search as out of date after a write.
+     */
+    synchronized void invalidateAll() {
+        ++version;
+    }
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counters
+     */
+    CacheStats stats() {
+        return counters.snapshot();
+    }
+
+    private static final class Cached {
+        final int[] intakeNumbers;
+        final long version;
+
+        Cached(int[] intakeNumbers, long version) {
+            this.intakeNumbers = intakeNumbers;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cs340.getpet.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position of the last result of a page of search results, used to fetch the page after it.
+ * <p>
+ * Cursors are handed to clients as opaque tokens. A token holds the sort key of the last result along with its
+ * intake number, which breaks ties between animals with the same name, so fetching any page costs the same as
+ * fetching the first one. Unnamed animals sort before every named one, as SQLite orders NULLs first.
+ */
+public final class SearchCursor {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * The sort order that the cursor is a position in.
+     */
+    final SearchQuery.Sort sort;
+    /**
+     * The name of the last result, or null if it is unnamed; only used when sorting by name.
+     */
+    final String name;
+    /**
+     * The intake number of the last result.
+     */
+    final int intakeNumber;
+
+    private SearchCursor(SearchQuery.Sort sort, String name, int intakeNumber) {
+        this.sort = sort;
+        this.name = name;
+        this.intakeNumber = intakeNumber;
+    }
+
+    /**
+     * Creates the token for the position right after an animal.
+     *
+     * @param sort the sort order of the results
+     * @param animal the last animal of a page
+     * @return the token
+     */
+    public static String after(SearchQuery.Sort sort, Animal animal) {
+        String token;
+        if (sort != SearchQuery.Sort.NAME)
+            token = "i:" + animal.intakeNumber;
+        else if (animal.name == null)
+            token = "u:" + animal.intakeNumber;
+        else
+            token = "n:" + animal.intakeNumber + ":" + animal.name;
+        return ENCODER.encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token created by {@link #after(SearchQuery.Sort, Animal)}.
+     *
+     * @param token the token
+     * @param sort the sort order that the token must have been created for
+     * @return the cursor
+     * @throws IllegalArgumentException when the token is not a valid cursor for the sort order
+     */
+    public static SearchCursor decode(String token, SearchQuery.Sort sort) {
+        String[] parts = new String(DECODER.decode(token), StandardCharsets.UTF_8).split(":", 3);
+
+        SearchCursor cursor;
+        try {
+            if (parts.length == 3 && parts[0].equals("n"))
+                cursor = new SearchCursor(SearchQuery.Sort.NAME, parts[2], Integer.parseInt(parts[1]));
+            else if (parts.length == 2 && parts[0].equals("u"))
+                cursor = new SearchCursor(SearchQuery.Sort.NAME, null, Integer.parseInt(parts[1]));
+            else if (parts.length == 2 && parts[0].equals("i"))
+                cursor = new SearchCursor(SearchQuery.Sort.INTAKE_NUMBER, null, Integer.parseInt(parts[1]));
+            else
+                throw new IllegalArgumentException("Invalid cursor");
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+
+        if (cursor.sort != sort)
+            throw new IllegalArgumentException("Cursor does not match the sort order");
+
+        return cursor;
+    }
+}
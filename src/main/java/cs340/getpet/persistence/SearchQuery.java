@@ -1,5 +1,6 @@
 package cs340.getpet.persistence;
 
+import com.google.gson.annotations.SerializedName;
 
 /**
  * A search query for finding an animal.
@@ -37,8 +38,34 @@ public class SearchQuery {
      * Whether or not animals should be required to be spayed/neutered.
      */
     public final boolean spayNeuter;
+    /**
+     * The maximum number of results to return, or null for the largest page size allowed.
+     */
+    public final Integer limit;
+    /**
+     * The cursor token of the previous page, or null to get the first page.
+     */
+    public final String after;
+    /**
+     * The order to return results in, or null to sort by name.
+     */
+    public final Sort sort;
+
+    /**
+     * The orders that search results can be sorted in.
+     */
+    public enum Sort {
+        @SerializedName("name")
+        NAME,
+        @SerializedName("intakeNumber")
+        INTAKE_NUMBER
+    }
 
     protected SearchQuery(Species species, Gender[] genders, String breed, Color[] colors, Size[] sizes, Integer cageNumber, boolean vaccinated, boolean spayNeuter) {
+        this(species, genders, breed, colors, sizes, cageNumber, vaccinated, spayNeuter, null, null, null);
+    }
+
+    protected SearchQuery(Species species, Gender[] genders, String breed, Color[] colors, Size[] sizes, Integer cageNumber, boolean vaccinated, boolean spayNeuter, Integer limit, String after, Sort sort) {
         this.species = species;
         this.genders = genders;
         this.breed = breed;
@@ -47,5 +74,15 @@ public class SearchQuery {
         this.cageNumber = cageNumber;
         this.vaccinated = vaccinated;
         this.spayNeuter = spayNeuter;
+        this.limit = limit;
+        this.after = after;
+        this.sort = sort;
+    }
+
+    /**
+     * @return the order to return results in, defaulting to sorting by name
+     */
+    public Sort sortOrDefault() {
+        return sort != null ? sort : Sort.NAME;
     }
 }
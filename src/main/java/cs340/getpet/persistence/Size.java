@@ -1,12 +1,14 @@
 package cs340.getpet.persistence;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
-import cs340.getpet.util.EnumSerializer;
+import cs340.getpet.util.EnumCodec;
 
 /**
  * The size of an animal.
  */
+@JsonAdapter(EnumCodec.Factory.class)
 public enum Size {
     @SerializedName("small")
     SMALL,
@@ -15,12 +17,17 @@ public enum Size {
     @SerializedName("large")
     LARGE;
 
+    private static final EnumCodec<Size> CODEC = EnumCodec.of(Size.class);
+
     @Override
     public String toString() {
-        return EnumSerializer.toString(this, Size.class);
+        return CODEC.toString(this);
     }
 
+    /**
+     * @throws IllegalArgumentException when no constant has the name
+     */
     public static Size fromString(String s) {
-        return EnumSerializer.fromString(s, Size.class);
+        return CODEC.fromString(s);
     }
 }
\ No newline at end of file
@@ -1,24 +1,31 @@
 package cs340.getpet.persistence;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
-import cs340.getpet.util.EnumSerializer;
+import cs340.getpet.util.EnumCodec;
 
 /**
  * The species of an animal.
  */
+@JsonAdapter(EnumCodec.Factory.class)
 public enum Species {
     @SerializedName("dog")
     DOG,
     @SerializedName("cat")
     CAT;
 
+    private static final EnumCodec<Species> CODEC = EnumCodec.of(Species.class);
+
     @Override
     public String toString() {
-        return EnumSerializer.toString(this, Species.class);
+        return CODEC.toString(this);
     }
 
+    /**
+     * @throws IllegalArgumentException when no constant has the name
+     */
     public static Species fromString(String s) {
-        return EnumSerializer.fromString(s, Species.class);
+        return CODEC.fromString(s);
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package cs340.getpet.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the prepared statements of one connection.
+ * <p>
+ * Statements are keyed by their SQL text, so each shape of a dynamically built query gets its own entry.
+ * A cache is only ever used by whoever holds the lease on its connection, so it needs no locking of its own;
+ * the counters are shared by every cache of a pool.
+ */
+final class StatementCache {
+    final Connection connection;
+    private final CacheStats.Counters counters;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    StatementCache(Connection connection, int maxSize, CacheStats.Counters counters) {
+        this.connection = connection;
+        this.counters = counters;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= maxSize)
+                    return false;
+
+                counters.evictions.increment();
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException e) {
+                    // the statement is unusable either way, so there is nothing else to do
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the prepared statement for the given SQL, preparing it if it is not cached.
+     * <p>
+     * The returned statement belongs to the cache and must not be closed by the caller.
+     *
+     * @param sql the SQL of the statement
+     * @return the prepared statement
+     * @throws SQLException when the statement could not be prepared
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt != null) {
+            counters.hits.increment();
+            return stmt;
+        }
+
+        counters.misses.increment();
+        stmt = connection.prepareStatement(sql);
+        statements.put(sql, stmt);
+        return stmt;
+    }
+
+    /**
+     * Closes every cached statement.
+     */
+    void clear() throws SQLException {
+        for (PreparedStatement stmt : statements.values())
+            stmt.close();
+        statements.clear();
+    }
+}
@@ -0,0 +1,242 @@
+package cs340.getpet.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cs340.getpet.persistence.Persistence.PersistenceException;
+
+/**
+ * Runs writes on a dedicated thread, committing every write queued at the same time in a single transaction so
+ * that concurrent writers share the cost of a commit.
+ * <p>
+ * The thread waits for a write, then takes every write queued behind it, up to a maximum batch size, optionally
+ * lingering for more to arrive. While a batch commits, new writes queue up for the next one, so batches grow with
+ * the number of concurrent writers without delaying a lone writer.
+ * <p>
+ * Each write runs in its own savepoint, so a failing write is rolled back on its own and the rest of its batch
+ * still commits. Every write gets a future that completes once its batch has committed, or completes exceptionally
+ * with a {@link PersistenceException} if the write or the commit failed.
+ * <p>
+ * The queue is bounded, so a burst of writers cannot grow it without limit; once it is full, further writes fail at
+ * once instead of waiting.
+ */
+final class WriteQueue implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteQueue.class);
+
+    /**
+     * A write run against the writer connection, inside the transaction of its batch.
+     */
+    @FunctionalInterface
+    interface Operation<T> {
+        T run(ConnectionPool.Lease lease) throws SQLException;
+    }
+
+    private static final Pending<Void> STOP = new Pending<>(null, null, null);
+
+    private final ConnectionPool pool;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<Pending<?>> queue;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Starts the thread of the queue.
+     *
+     * @param pool the pool to lease the writer connection from
+     * @param maxBatchSize the maximum number of writes committed together
+     * @param lingerMillis how long to wait for more writes once the first write of a batch arrives
+     * @param capacity the maximum number of writes waiting to be committed
+     */
+    WriteQueue(ConnectionPool pool, int maxBatchSize, long lingerMillis, int capacity) {
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.thread = new Thread(this::run, "getpet-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a write.
+     *
+     * @param operation the write
+     * @param committed a callback run with the result of the write once it has been committed, while the writer
+     *                  connection is still leased, so callbacks run in the order their writes were committed; its
+     *                  failures are logged, as the write has committed regardless
+     * @param failure the message of the exception that the future completes with if the write fails
+     * @return the future result of the write, which fails at once if the queue is full
+     */
+    <T> CompletableFuture<T> submit(Operation<T> operation, Consumer<T> committed, String failure) {
+        Pending<T> pending = new Pending<>(operation, committed, failure);
+        if (closed)
+            pending.future.completeExceptionally(new PersistenceException("The database has been closed"));
+        else if (!queue.offer(pending))
+            pending.future.completeExceptionally(new PersistenceException("Too many writes are waiting to be committed"));
+        return pending.future;
+    }
+
+    /**
+     * Stops accepting writes, waits for the queued writes to be committed and stops the thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            // waits for room if the queue is full, as the writer keeps taking writes until it sees STOP
+            queue.put(STOP);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        final List<Pending<?>> batch = new ArrayList<>();
+        boolean stopping = false;
+
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+                final long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // only close() stops the thread, so keep going with what was taken
+            }
+
+            stopping = batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                try {
+                    commit(batch);
+                } catch (Throwable e) {
+                    // keep the writer alive, as every later write would otherwise wait forever
+                    logger.error("Unexpected failure while committing writes", e);
+                    for (Pending<?> pending : batch) {
+                        pending.failed(new PersistenceException("Failed to commit writes", e));
+                        pending.complete();
+                    }
+                }
+            }
+            batch.clear();
+        }
+
+        // writes queued after STOP raced with close(), and are refused like later ones
+        for (Pending<?> pending; (pending = queue.poll()) != null; )
+            if (pending != STOP)
+                pending.future.completeExceptionally(new PersistenceException("The database has been closed"));
+    }
+
+    /**
+     * Runs a batch of writes in one transaction and completes their futures.
+     */
+    private void commit(List<Pending<?>> batch) {
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection;
+            conn.setAutoCommit(false);
+            try {
+                for (Pending<?> pending : batch)
+                    pending.run(lease);
+                conn.commit();
+            } catch (Throwable e) {
+                conn.rollback();
+                // the batch is rolled back as a whole, including the writes that had succeeded
+                for (Pending<?> pending : batch)
+                    pending.failed(new PersistenceException("Failed to commit writes", e));
+                if (e instanceof Error)
+                    logger.error("Write failed, rolled back its batch", e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            for (Pending<?> pending : batch)
+                pending.committed();
+        } catch (PersistenceException e) {
+            for (Pending<?> pending : batch)
+                pending.failed(e);
+        } catch (SQLException e) {
+            for (Pending<?> pending : batch)
+                pending.failed(new PersistenceException("Failed to end write transaction", e));
+        }
+
+        // complete the futures only once the writer is released, so that callers can write again at once
+        for (Pending<?> pending : batch)
+            pending.complete();
+    }
+
+    /**
+     * A queued write and its outcome.
+     */
+    private static final class Pending<T> {
+        final Operation<T> operation;
+        final Consumer<T> committed;
+        final String failure;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Exception error;
+
+        Pending(Operation<T> operation, Consumer<T> committed, String failure) {
+            this.operation = operation;
+            this.committed = committed;
+            this.failure = failure;
+        }
+
+        /**
+         * Runs the write in a savepoint, rolling back only the write if it fails.
+         *
+         * @throws SQLException when the savepoint could not be created, released or rolled back to
+         */
+        void run(ConnectionPool.Lease lease) throws SQLException {
+            lease.prepare("SAVEPOINT write").execute();
+            try {
+                result = operation.run(lease);
+            } catch (SQLException | RuntimeException e) {
+                lease.prepare("ROLLBACK TO write").execute();
+                error = e instanceof SQLException ? new PersistenceException(failure, e) : e;
+            }
+            lease.prepare("RELEASE write").execute();
+        }
+
+        void failed(PersistenceException e) {
+            if (error == null)
+                error = e;
+        }
+
+        void committed() {
+            if (error != null)
+                return;
+
+            try {
+                committed.accept(result);
+            } catch (Throwable e) {
+                // the write has committed, so reporting a failure would tell the caller that it had not
+                logger.error("Failed to run the committed callback of a write", e);
+            }
+        }
+
+        void complete() {
+            if (future.isDone())
+                return;
+            if (error != null)
+                future.completeExceptionally(error);
+            else
+                future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package cs340.getpet.util;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Converts the constants of an enum to and from their serialized names, which are given by {@link SerializedName}
+ * annotations like Gson does, or default to the names of the constants.
+ * <p>
+ * The names are resolved once, when the codec is created. Converting a constant to its name indexes an array by
+ * ordinal, and converting a name to its constant hashes it into a table without collisions, so each needs a single
+ * string comparison and neither allocates. Names whose hash codes collide, which no multiplier can separate, are
+ * looked up in a hash map instead.
+ * <p>
+ * Enums annotated with {@code @JsonAdapter(EnumCodec.Factory.class)} are read and written by Gson through their
+ * codec as well.
+ *
+ * @param <T> the enum type
+ */
+public final class EnumCodec<T extends Enum<T>> {
+    private static final ClassValue<EnumCodec<?>> CODECS = new ClassValue<>() {
+        @Override
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        protected EnumCodec<?> computeValue(Class<?> type) {
+            return new EnumCodec(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final T[] constants;
+    private final String[] names;
+    private final int multiplier;
+    private final int shift;
+    private final T[] table;
+    private final Map<String, T> byName;
+
+    /**
+     * @param type the enum type
+     * @return the codec of the enum type, which is created on first use and shared afterwards
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Enum<T>> EnumCodec<T> of(Class<T> type) {
+        return (EnumCodec<T>) CODECS.get(type);
+    }
+
+    private EnumCodec(Class<T> type) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+        this.names = new String[constants.length];
+
+        for (T constant : constants) {
+            try {
+                SerializedName annotation = type.getField(constant.name()).getAnnotation(SerializedName.class);
+                names[constant.ordinal()] = annotation != null ? annotation.value() : constant.name();
+            } catch (NoSuchFieldException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        // find a multiplier that hashes every name to its own slot of the smallest table that allows it, giving up
+        // past four times the square of the number of constants, where a random multiplier succeeds more often than
+        // not unless hash codes collide
+        final int maxBits = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(0, constants.length - 1))) + 2;
+        for (int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, 2 * constants.length - 1)); bits <= maxBits; ++bits) {
+            for (int multiplier = 1; multiplier < (1 << 16); multiplier += 2) {
+                T[] table = tryTable(multiplier, 32 - bits);
+                if (table != null) {
+                    this.multiplier = multiplier;
+                    this.shift = 32 - bits;
+                    this.table = table;
+                    this.byName = null;
+                    return;
+                }
+            }
+        }
+
+        this.multiplier = 0;
+        this.shift = 0;
+        this.table = null;
+        this.byName = new HashMap<>();
+        for (T constant : constants)
+            byName.put(names[constant.ordinal()], constant);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] tryTable(int multiplier, int shift) {
+        T[] table = (T[]) Array.newInstance(type, 1 << (32 - shift));
+        for (T constant : constants) {
+            int slot = (names[constant.ordinal()].hashCode() * multiplier) >>> shift;
+            if (table[slot] != null)
+                return null;
+            table[slot] = constant;
+        }
+        return table;
+    }
+
+    /**
+     * @param constant the constant
+     * @return the serialized name of the constant
+     */
+    public String toString(T constant) {
+        return names[constant.ordinal()];
+    }
+
+    /**
+     * @param name the serialized name of a constant, or null
+     * @return the constant with the name, or null if the name is null
+     * @throws IllegalArgumentException when no constant has the name
+     */
+    public T fromString(String name) {
+        if (name == null)
+            return null;
+
+        T constant = table != null ? table[(name.hashCode() * multiplier) >>> shift] : byName.get(name);
+        if (constant == null || !names[constant.ordinal()].equals(name))
+            throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " \"" + name + "\"");
+        return constant;
+    }
+
+    /**
+     * Gson type adapter factory for enums annotated with {@code @JsonAdapter(EnumCodec.Factory.class)}. Unknown
+     * names are rejected with a {@link JsonSyntaxException}.
+     */
+    public static final class Factory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public <A> TypeAdapter<A> create(Gson gson, TypeToken<A> typeToken) {
+            Class<?> rawType = typeToken.getRawType();
+            if (!rawType.isEnum())
+                return null;
+
+            return (TypeAdapter<A>) new Adapter(of((Class) rawType));
+        }
+    }
+
+    private static final class Adapter<T extends Enum<T>> extends TypeAdapter<T> {
+        private final EnumCodec<T> codec;
+
+        Adapter(EnumCodec<T> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null)
+                out.nullValue();
+            else
+                out.value(codec.toString(value));
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String name = in.nextString();
+            try {
+                return codec.fromString(name);
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e.getMessage() + " at " + in.getPath(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package cs340.getpet.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values with log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} get a bucket each. Above that, every power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so a value is known to within 1/{@value #SUB_BUCKETS} of itself however large
+ * it is. Recording a value finds its bucket with a few shifts and increments a counter, without locking or
+ * allocating, so histograms can be recorded into from any number of threads.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * The exponent of the largest power of two that is tracked; larger values are counted as the largest value.
+     */
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, which is clamped to be non-negative
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(Math.min(value, MAX_VALUE)));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        // the top SUB_BUCKET_BITS + 1 bits of the value, of which the first is always set, pick the sub-bucket
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the largest value that falls in a bucket
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Takes a snapshot of the histogram. Values recorded while the snapshot is taken may be partially included.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i)
+            snapshot[i] = counts.get(i);
+        return new Snapshot(snapshot, count.sum(), sum.sum(), max.get());
+    }
+
+    /**
+     * The values recorded into a histogram up to some point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        /**
+         * The number of values recorded.
+         */
+        public final long count;
+        /**
+         * The sum of the values recorded.
+         */
+        public final long sum;
+        /**
+         * The largest value recorded, or 0 if there are none.
+         */
+        public final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @param quantile the quantile, between 0 and 1
+         * @return an upper bound of the value at the quantile, accurate to within 1/16 of the value, or 0 if there
+         *         are no values
+         */
+        public long valueAt(double quantile) {
+            long total = 0;
+            for (long bucketCount : counts)
+                total += bucketCount;
+            if (total == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(highestValue(i), max);
+            }
+            return max;
+        }
+    }
+}
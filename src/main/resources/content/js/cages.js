@@ -1,8 +1,27 @@
 requirePrivilegeLevel('any');
 
+// cage elements by cage number, kept up to date by the change feed
+const cageDivs = new Map();
+
+const describeCage = cage => {
+    if (cage.dogCount == 0 && cage.catCount == 0)
+        return 'empty';
+    else if (cage.dogCount == 0)
+        return `${cage.catCount} cat${cage.catCount != 1 ? 's' : ''}`;
+    else if (cage.catCount == 0)
+        return `${cage.dogCount} dog${cage.dogCount != 1 ? 's' : ''}`;
+    else
+        return `${cage.dogCount} dog${cage.dogCount != 1 ? 's' : ''}, ${cage.catCount} cat${cage.catCount != 1 ? 's' : ''}`;
+}
+
 const fillCages = cages => {
+    for (const cageDiv of cageDivs.values())
+        cageDiv.remove();
+    cageDivs.clear();
+
     for (const cage of cages.cages) {
         const cageDiv = document.createElement('div');
+        cageDiv.cage = { ...cage };
         cageDiv.classList.add('cage');
 
         const cageNumberDiv = document.createElement('div');
@@ -16,14 +35,7 @@ const fillCages = cages => {
 
         const cageAnimalsDiv = document.createElement('div');
         cageAnimalsDiv.classList.add('cageAnimals');
-        if (cage.dogCount == 0 && cage.catCount == 0)
-            cageAnimalsDiv.innerText = 'empty';
-        else if (cage.dogCount == 0)
-            cageAnimalsDiv.innerText = `${cage.catCount} cat${cage.catCount != 1 ? 's' : ''}`;
-        else if (cage.catCount == 0)
-            cageAnimalsDiv.innerText = `${cage.dogCount} dog${cage.dogCount != 1 ? 's' : ''}`;
-        else
-            cageAnimalsDiv.innerText = `${cage.dogCount} dog${cage.dogCount != 1 ? 's' : ''}, ${cage.catCount} cat${cage.catCount != 1 ? 's' : ''}`;
+        cageAnimalsDiv.innerText = describeCage(cage);
         cageDiv.appendChild(cageAnimalsDiv);
 
         const viewAnimalsButton = document.createElement('button');
@@ -37,9 +49,54 @@ const fillCages = cages => {
         cageDiv.appendChild(viewAnimalsButton);
 
         document.getElementById('main').appendChild(cageDiv);
+        cageDivs.set(cage.cageNumber, cageDiv);
+    }
+}
+
+// the fetch in flight, and whether changes arrived during it, which it may or may not include
+let loading = null;
+let stale = false;
+
+// fetches the cages, and once more after that if changes arrived in the meantime, rather than applying them twice
+const loadCages = () => {
+    if (loading) {
+        stale = true;
+        return loading;
     }
+
+    stale = false;
+    loading = apiCall({ endpoint: '/cages' })
+        .then(fillCages)
+        .catch(e => displayError('failed to get cages', e))
+        .finally(() => {
+            loading = null;
+            if (stale)
+                loadCages();
+        });
+    return loading;
 }
 
-apiCall({ endpoint: '/cages' })
-.then(fillCages)
-.catch(e => displayError('failed to get cages', e));
\ No newline at end of file
+loadCages();
+
+// apply the changes made by others as they happen, re-fetching when they cannot be applied
+const changes = new EventSource('/persistence/changes');
+// changes made before the feed opened are only in a fetch that started after it
+changes.addEventListener('open', loadCages, { once: true });
+changes.addEventListener('cage', event => {
+    if (loading) {
+        stale = true;
+        return;
+    }
+
+    const delta = JSON.parse(event.data);
+    const cageDiv = cageDivs.get(delta.cageNumber);
+    if (!cageDiv) {
+        loadCages();
+        return;
+    }
+
+    cageDiv.cage.dogCount += delta.dogDelta;
+    cageDiv.cage.catCount += delta.catDelta;
+    cageDiv.querySelector('.cageAnimals').innerText = describeCage(cageDiv.cage);
+});
+changes.addEventListener('reset', loadCages);
@@ -1,9 +1,13 @@
 requirePrivilegeLevel('any');
 
-const displaySearchResults = results => {
+const clearSearchResults = () => {
     const resultElement = document.getElementById('result');
     while (resultElement.firstChild)
         resultElement.removeChild(resultElement.firstChild);
+}
+
+const displaySearchResults = results => {
+    const resultElement = document.getElementById('result');
 
     console.log('Got response with results', results);
 
@@ -133,17 +137,29 @@ const displaySearchResults = results => {
     }
 }
 
+// incremented by each search, so that the pages of an earlier search stop being fetched
+let currentSearch = 0;
+
+// results come one page at a time; each page is shown as it arrives and the next one fetched after it
+const searchPage = (search, query) => apiCall({
+    endpoint: '/search',
+    method: 'POST',
+    body: { query },
+})
+    .then(results => {
+        if (search !== currentSearch)
+            return;
+        displaySearchResults(results);
+        if (results.next)
+            return searchPage(search, { ...query, after: results.next });
+    });
+
 const onSubmit = ev => {
     ev.preventDefault();
 
-    let searchRequest = { query: readForm(document.getElementById('searchForm')) };
-
-    apiCall({
-        endpoint: '/search',
-        method: 'POST',
-        body: searchRequest,
-    })
-        .then(displaySearchResults)
+    const search = ++currentSearch;
+    clearSearchResults();
+    searchPage(search, readForm(document.getElementById('searchForm')))
         .catch(e => displayError('failed to perform search', e));
 
     return false;
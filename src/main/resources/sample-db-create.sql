@@ -1,7 +1,13 @@
 -- NOTE: YOU DO NOT NEED TO APPLY THIS MANUALLY! The code now
 --       does this for you, so it is no longer necessary.
 -- This is code to initialize the database with sample data.
+-- It creates the original layout of the schema (version 0), and the
+-- migrations in Schema.java then upgrade it to the current one.
+DROP TABLE IF EXISTS CageCounts;
+DROP TABLE IF EXISTS AnimalsText;
+DROP TABLE IF EXISTS AnimalColors;
 DROP TABLE IF EXISTS Animals;
+PRAGMA user_version = 0;
 CREATE TABLE IF NOT EXISTS Animals (
     intakeNumber INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,
     species TEXT NOT NULL,
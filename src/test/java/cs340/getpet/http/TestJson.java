@@ -0,0 +1,35 @@
+package cs340.getpet.http;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestJson {
+    @Test
+    public void testBulkResponseRoundTrip() {
+        AnimalBulkNewResponse response = new AnimalBulkNewResponse(new AnimalBulkNewResponse.Result[] {
+            AnimalBulkNewResponse.Result.added(7),
+            AnimalBulkNewResponse.Result.error("Missing species"),
+            null,
+        });
+        String json = Json.GSON.toJson(response);
+        Assertions.assertEquals("{\"results\":[{\"intakeNumber\":7},{\"error\":\"Missing species\"},null]}", json);
+
+        AnimalBulkNewResponse read = Json.GSON.fromJson(json, AnimalBulkNewResponse.class);
+        Assertions.assertEquals(3, read.results.length);
+        Assertions.assertEquals(7, read.results[0].intakeNumber);
+        Assertions.assertNull(read.results[0].error);
+        Assertions.assertNull(read.results[1].intakeNumber);
+        Assertions.assertEquals("Missing species", read.results[1].error);
+        Assertions.assertNull(read.results[2]);
+        Assertions.assertEquals(json, Json.GSON.toJson(read));
+    }
+
+    @Test
+    public void testBulkResultIgnoresNullsAndUnknownFields() {
+        AnimalBulkNewResponse.Result result = Json.GSON.fromJson(
+                "{\"intakeNumber\":3,\"error\":null,\"retry\":{\"after\":[1]}}", AnimalBulkNewResponse.Result.class);
+
+        Assertions.assertEquals(3, result.intakeNumber);
+        Assertions.assertNull(result.error);
+    }
+}
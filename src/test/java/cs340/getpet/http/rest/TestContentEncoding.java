@@ -0,0 +1,83 @@
+package cs340.getpet.http.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestContentEncoding {
+    private static final String JSON = "{\"animals\":[" + "{\"species\":\"dog\",\"colors\":[\"gold\"]},".repeat(500) + "{}]}";
+
+    @Test
+    public void testNegotiate() {
+        Assertions.assertNull(ContentEncoding.negotiate(null));
+        Assertions.assertNull(ContentEncoding.negotiate(""));
+        Assertions.assertNull(ContentEncoding.negotiate("identity, br"));
+        Assertions.assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate, br"));
+        Assertions.assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, GZIP"));
+        Assertions.assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("deflate"));
+        Assertions.assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate;q=0.8"));
+        Assertions.assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+        Assertions.assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        Assertions.assertNull(ContentEncoding.negotiate("gzip;q=0"));
+        Assertions.assertNull(ContentEncoding.negotiate("*;q=0"));
+    }
+
+    @Test
+    public void testAcceptedBy() {
+        Assertions.assertFalse(ContentEncoding.GZIP.acceptedBy(null));
+        Assertions.assertTrue(ContentEncoding.GZIP.acceptedBy("deflate;q=1, gzip;q=0.1"));
+        Assertions.assertTrue(ContentEncoding.GZIP.acceptedBy("br, *"));
+        Assertions.assertFalse(ContentEncoding.GZIP.acceptedBy("gzip;q=0, deflate"));
+        Assertions.assertFalse(ContentEncoding.GZIP.acceptedBy("*, gzip;q=0"));
+        Assertions.assertFalse(ContentEncoding.GZIP.acceptedBy("identity"));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        // twice, so that the second stream reuses the pooled Deflater of the first
+        for (int i = 0; i < 2; ++i) {
+            byte[] compressed = compress(ContentEncoding.GZIP);
+            Assertions.assertTrue(compressed.length < JSON.length() / 10);
+            Assertions.assertEquals(JSON, decompress(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        }
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        for (int i = 0; i < 2; ++i) {
+            byte[] compressed = compress(ContentEncoding.DEFLATE);
+            Assertions.assertTrue(compressed.length < JSON.length() / 10);
+            Assertions.assertEquals(JSON, decompress(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+        }
+    }
+
+    private static byte[] compress(ContentEncoding encoding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = encoding.deflater();
+        try (OutputStream out = encoding.compress(bytes, deflater)) {
+            // written in pieces and a byte at a time, as writers do
+            byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+            out.write(json[0]);
+            out.write(json, 1, 1000);
+            out.write(json, 1001, json.length - 1001);
+        } finally {
+            encoding.release(deflater);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String decompress(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cs340.getpet.http.rest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestRouter {
+    private static final RequestHandler<RequestBody.EmptyRequest, ResponseBody.EmptyResponse> NOTHING = req -> Response.empty(200);
+
+    private static final Endpoint CAGES = endpoint("/cages");
+    private static final Endpoint NEW_ANIMAL = endpoint("/animal/new");
+    private static final Endpoint ANIMAL = endpoint("/animal/{intakeNumber}");
+    private static final Endpoint ANIMAL_PHOTO = endpoint("/animal/{intakeNumber}/photo/{photoNumber}");
+
+    private static final Router router = new Router(new Endpoint[] { CAGES, NEW_ANIMAL, ANIMAL, ANIMAL_PHOTO });
+
+    private static Endpoint endpoint(String path) {
+        return new Endpoint.Builder().path(path).get(ResponseBody.EmptyResponse.class, NOTHING).build();
+    }
+
+    @Test
+    public void testLiteralPaths() {
+        Assertions.assertSame(CAGES, router.route("/cages").endpoint);
+        Assertions.assertSame(NEW_ANIMAL, router.route("/animal/new").endpoint);
+    }
+
+    @Test
+    public void testPathVariables() throws RestException {
+        Router.Route route = router.route("/animal/42");
+        Assertions.assertSame(ANIMAL, route.endpoint);
+        Assertions.assertEquals(42, route.pathVariables.getInt("intakeNumber"));
+        Assertions.assertEquals("42", route.pathVariables.get("intakeNumber"));
+
+        route = router.route("/animal/7/photo/3");
+        Assertions.assertSame(ANIMAL_PHOTO, route.endpoint);
+        Assertions.assertEquals(7, route.pathVariables.getInt("intakeNumber"));
+        Assertions.assertEquals(3, route.pathVariables.getInt("photoNumber"));
+    }
+
+    @Test
+    public void testInvalidPathVariable() {
+        Router.Route route = router.route("/animal/doge");
+        Assertions.assertSame(ANIMAL, route.endpoint);
+
+        RestException e = Assertions.assertThrows(RestException.class, () -> route.pathVariables.getInt("intakeNumber"));
+        Assertions.assertEquals(RestException.Code.INVALID_PATH_PARAMETER, e.code);
+    }
+
+    @Test
+    public void testUnmatchedPaths() {
+        Assertions.assertNull(router.route(""));
+        Assertions.assertNull(router.route("/"));
+        Assertions.assertNull(router.route("/cages/"));
+        Assertions.assertNull(router.route("/animal/"));
+        Assertions.assertNull(router.route("/animal/1/photo"));
+        Assertions.assertNull(router.route("/animals"));
+    }
+
+    @Test
+    public void testDuplicatePaths() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Router(new Endpoint[] { ANIMAL, endpoint("/animal/{id}") }));
+    }
+}
@@ -0,0 +1,79 @@
+package cs340.getpet.persistence;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+
+public class TestJsonAdapters {
+    private static final Gson reflective = new Gson();
+    private static final Gson adapters = new GsonBuilder()
+            .registerTypeAdapter(Animal.class, JsonAdapters.ANIMAL)
+            .registerTypeAdapter(SearchQuery.class, JsonAdapters.SEARCH_QUERY)
+            .registerTypeAdapter(Cage.class, JsonAdapters.CAGE)
+            .create();
+
+    private static final String ANIMAL_JSON = "{\"cageNumber\":5,\"species\":\"dog\",\"breed\":\"Shiba Inu\",\"size\":\"medium\","
+            + "\"colors\":[\"gold\",\"white\"],\"gender\":\"m\",\"weight\":42.5,\"vaccinated\":true,\"spayNeuter\":false,"
+            + "\"name\":\"Doge\",\"missing\":false}";
+
+    @Test
+    public void testAnimalMatchesReflection() {
+        Animal animal = reflective.fromJson(ANIMAL_JSON, Animal.class);
+        Animal read = adapters.fromJson(ANIMAL_JSON, Animal.class);
+
+        Assertions.assertEquals(animal, read);
+        Assertions.assertNull(read.intakeNumber);
+        Assertions.assertEquals(reflective.toJson(animal), adapters.toJson(read));
+
+        Animal withIntakeNumber = new Animal(7, 5, Species.CAT, "Tabby", Size.SMALL, new Color[] { Color.BLACK },
+                Gender.FEMALE, 9, false, true, "Tom", true);
+        Assertions.assertEquals(reflective.toJson(withIntakeNumber), adapters.toJson(withIntakeNumber));
+        Assertions.assertEquals(7, adapters.fromJson(adapters.toJson(withIntakeNumber), Animal.class).intakeNumber);
+    }
+
+    @Test
+    public void testAnimalDefaults() {
+        Animal animal = adapters.fromJson("{\"unknown\":{\"nested\":[1,2]},\"weight\":null}", Animal.class);
+
+        Assertions.assertNull(animal.species);
+        Assertions.assertNull(animal.colors);
+        Assertions.assertEquals(0, animal.cageNumber);
+        Assertions.assertEquals(0, animal.weight);
+        Assertions.assertFalse(animal.vaccinated);
+    }
+
+    @Test
+    public void testSearchQueryMatchesReflection() {
+        String json = "{\"species\":\"cat\",\"genders\":[\"f\"],\"breed\":\"Tab\",\"colors\":[\"black\",\"lGray\"],"
+                + "\"sizes\":[\"small\",\"large\"],\"cageNumber\":3,\"vaccinated\":true,\"spayNeuter\":false,\"limit\":20,"
+                + "\"after\":\"abc\",\"sort\":\"intakeNumber\"}";
+        SearchQuery query = adapters.fromJson(json, SearchQuery.class);
+
+        Assertions.assertEquals(SearchQuery.Sort.INTAKE_NUMBER, query.sort);
+        Assertions.assertArrayEquals(new Color[] { Color.BLACK, Color.LIGHT_GRAY }, query.colors);
+        Assertions.assertEquals(reflective.toJson(reflective.fromJson(json, SearchQuery.class)), adapters.toJson(query));
+        Assertions.assertEquals(reflective.toJson(new SearchQuery(null, null, null, null, null, null, false, false)),
+                adapters.toJson(new SearchQuery(null, null, null, null, null, null, false, false)));
+    }
+
+    @Test
+    public void testCageMatchesReflection() {
+        Cage cage = new Cage(4, 2, 1);
+
+        Assertions.assertEquals(reflective.toJson(cage), adapters.toJson(cage));
+        Assertions.assertEquals(cage, adapters.fromJson(adapters.toJson(cage), Cage.class));
+    }
+
+    @Test
+    public void testRejectedWhileParsing() {
+        Assertions.assertThrows(JsonSyntaxException.class, () -> adapters.fromJson("{\"species\":\"bird\"}", Animal.class));
+        Assertions.assertThrows(JsonSyntaxException.class, () -> adapters.fromJson("{\"colors\":[\"black\",null]}", Animal.class));
+        Assertions.assertThrows(JsonSyntaxException.class, () -> adapters.fromJson("{\"cageNumber\":1e12}", Animal.class));
+        Assertions.assertThrows(JsonSyntaxException.class, () -> adapters.fromJson("{\"weight\":[]}", Animal.class));
+        Assertions.assertThrows(JsonSyntaxException.class, () -> adapters.fromJson("{\"sizes\":[null]}", SearchQuery.class));
+        Assertions.assertThrows(JsonSyntaxException.class, () -> adapters.fromJson("{\"sort\":\"weight\"}", SearchQuery.class));
+    }
+}
@@ -1,10 +1,23 @@
 package cs340.getpet.persistence;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import cs340.getpet.persistence.Persistence.PersistenceException;
 
@@ -59,6 +72,76 @@ public class TestPersistence {
     // Persistence.deleteAnimal:
     //      - Make a test that adds an animal, updates it, then deletes it
 
+    @Test
+    public void testAddAnimals() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+
+        int[] intakeNumbers = persistence.newAnimals(List.of(testingAnimals));
+        Assertions.assertEquals(testingAnimals.length, intakeNumbers.length);
+        for (int i = 0; i < testingAnimals.length; ++i)
+            Assertions.assertEquals(testingAnimals[i], persistence.getAnimal(intakeNumbers[i]));
+
+        // the colors of every animal must be searchable
+        SearchQuery white = new SearchQuery(null, null, null, new Color[] { Color.WHITE }, null, null, false, false);
+        Assertions.assertEquals(4, persistence.search(white).length);
+    }
+
+    @Test
+    public void testExportAnimals() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        persistence.newAnimal(testingAnimals[0]);
+
+        List<Animal> exported = new ArrayList<>();
+        Assertions.assertEquals(10, persistence.exportAnimals(exported::add));
+        Assertions.assertEquals(10, exported.size());
+        for (int i = 0; i < exported.size(); ++i)
+            Assertions.assertEquals(i + 1, exported.get(i).intakeNumber);
+        Assertions.assertEquals(testingAnimals[0], exported.get(9));
+    }
+
+    @Test
+    public void testExportAnimalsInChunks() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        persistence.newAnimals(Collections.nCopies(2491, testingAnimals[1]));
+
+        // more animals than fit in one chunk, each exported once and in order
+        List<Animal> exported = new ArrayList<>();
+        Assertions.assertEquals(2500, persistence.exportAnimals(exported::add));
+        for (int i = 0; i < exported.size(); ++i)
+            Assertions.assertEquals(i + 1, exported.get(i).intakeNumber);
+    }
+
+    @Test
+    public void testExportSnapshot(@TempDir Path tempDir) throws PersistenceException {
+        Persistence persistence = new Persistence(new Persistence.Configuration.Builder()
+                .database(tempDir.resolve("getpet.db").toString())
+                .build());
+        persistence.newAnimals(Collections.nCopies(2491, testingAnimals[1]));
+
+        // animals added once the export has started are after its first chunk, but not part of its snapshot
+        List<Animal> exported = new ArrayList<>();
+        Assertions.assertEquals(2500, persistence.exportAnimals(animal -> {
+            if (exported.isEmpty())
+                persistence.newAnimal(testingAnimals[0]);
+            exported.add(animal);
+        }));
+        Assertions.assertEquals(2501, persistence.exportAnimals(animal -> {}));
+    }
+
+    @Test
+    public void testFailedAddLeavesNoBatch() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        int total = persistence.search(new SearchQuery(null, null, null, null, null, null, false, false)).length;
+        Animal noSpecies = new Animal(null, 7, null, "Tabby", Size.SMALL, new Color[] { Color.BLACK }, Gender.FEMALE, 9.0, false, false, "Tom", false);
+
+        Assertions.assertThrows(Exception.class, () -> persistence.newAnimals(List.of(testingAnimals[0], noSpecies)));
+
+        // the failed write must not leave its first animal queued for the next write to insert
+        int intakeNumber = persistence.newAnimal(testingAnimals[1]);
+        Assertions.assertEquals(total + 1, persistence.search(new SearchQuery(null, null, null, null, null, null, false, false)).length);
+        Assertions.assertEquals(testingAnimals[1], persistence.getAnimal(intakeNumber));
+    }
+
     @Test
     public void testDeleteAnimal() throws PersistenceException {
         Persistence persistence = new Persistence(":memory:");
@@ -243,4 +326,507 @@ public class TestPersistence {
 
         Assertions.assertArrayEquals(expected, actual);
     }
+
+    @Test
+    public void testGetCagesUpdateDelete() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+
+        // moving the dog from cage 5 to cage 2 and turning it into a cat
+        int intakeNumber = persistence.newAnimal(testingAnimals[0]);
+        Assertions.assertTrue(persistence.updateAnimal(intakeNumber, new Animal.Builder()
+                .cageNumber(2)
+                .species(Species.CAT)
+                .breed("Tabby")
+                .size(Size.SMALL)
+                .colors(new Color[] { Color.GOLD })
+                .gender(Gender.MALE)
+                .weight(12.0)
+                .vaccinated(true)
+                .spayNeuter(true)
+                .name("Doge")
+                .missing(false)
+                .build()));
+        // emptying cage 0
+        Assertions.assertTrue(persistence.deleteAnimal(4));
+
+        Cage[] expected = new Cage[] {
+            new Cage(1, 0, 1),
+            new Cage(2, 2, 3),
+            new Cage(8, 1, 0),
+            new Cage(9, 1, 0),
+            new Cage(13, 1, 0)
+        };
+
+        Assertions.assertArrayEquals(expected, persistence.getCages());
+    }
+
+    @Test
+    public void testQueryStats() throws PersistenceException {
+        // a threshold of 0 logs every operation as slow, explaining its query plan
+        Persistence persistence = new Persistence(new Persistence.Configuration.Builder().slowQueryMillis(0).build());
+        int cages = persistence.getCages().length;
+        persistence.getCages();
+        Animal[] found = persistence.search(new SearchQuery(Species.DOG, null, "Shi", null, null, null, false, false));
+        persistence.deleteAnimal(4);
+
+        QueryStats[] stats = persistence.getQueryStats();
+        Assertions.assertArrayEquals(new String[] { "deleteAnimal", "getCages", "search" },
+                Arrays.stream(stats).map(s -> s.operation).toArray(String[]::new));
+
+        QueryStats getCages = stats[1];
+        Assertions.assertEquals(2, getCages.count);
+        Assertions.assertEquals(2, getCages.slowCount);
+        Assertions.assertEquals(2 * cages, getCages.rows);
+        Assertions.assertTrue(getCages.maxNanos > 0 && getCages.maxNanos <= getCages.totalNanos());
+
+        Assertions.assertEquals(found.length, stats[2].rows);
+        Assertions.assertEquals(1, stats[0].rows);
+    }
+
+    @Test
+    public void testConcurrentReadsAndWrites(@TempDir Path tempDir) throws Exception {
+        Persistence persistence = new Persistence(new Persistence.Configuration.Builder()
+                .database(tempDir.resolve("concurrent.db").toString())
+                .readConnections(4)
+                .build());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; ++i) {
+                final boolean write = i % 4 == 0;
+                futures.add(executor.submit(() -> write
+                        ? persistence.newAnimal(testingAnimals[0])
+                        : persistence.search(new SearchQuery(null, null, null, null, null, null, false, false)).length));
+            }
+            for (Future<Integer> future : futures)
+                Assertions.assertTrue(future.get() > 0);
+
+            Assertions.assertEquals(19, persistence.search(new SearchQuery(null, null, null, null, null, null, false, false)).length);
+        } finally {
+            executor.shutdown();
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testGroupCommit(@TempDir Path tempDir) throws Exception {
+        Persistence persistence = new Persistence(new Persistence.Configuration.Builder()
+                .database(tempDir.resolve("group.db").toString())
+                .writeDelayMillis(5)
+                .build());
+        Animal invalid = new Animal.Builder()
+                .cageNumber(5)
+                .species(Species.DOG)
+                .breed("Shiba Inu")
+                .size(Size.MEDIUM)
+                .colors(new Color[] { null })
+                .gender(Gender.MALE)
+                .weight(42.0)
+                .vaccinated(true)
+                .spayNeuter(true)
+                .name("Doge")
+                .missing(false)
+                .build();
+
+        try {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; ++i)
+                futures.add(persistence.newAnimalAsync(testingAnimals[i % 2]));
+            CompletableFuture<int[]> failed = persistence.newAnimalsAsync(List.of(testingAnimals[0], invalid));
+            CompletableFuture<Boolean> deleted = persistence.deleteAnimalAsync(1);
+
+            // the failing write is rolled back on its own, and the writes around it still commit
+            Assertions.assertThrows(ExecutionException.class, failed::get);
+            Assertions.assertTrue(deleted.get());
+            Set<Integer> intakeNumbers = new HashSet<>();
+            for (int i = 0; i < futures.size(); ++i) {
+                int intakeNumber = futures.get(i).get();
+                Assertions.assertTrue(intakeNumbers.add(intakeNumber));
+                Assertions.assertEquals(testingAnimals[i % 2], persistence.getAnimal(intakeNumber));
+            }
+            Assertions.assertEquals(9 + 20 - 1, persistence.search(new SearchQuery(null, null, null, null, null, null, false, false)).length);
+        } finally {
+            persistence.close();
+        }
+
+        Assertions.assertTrue(persistence.newAnimalAsync(testingAnimals[0]).isCompletedExceptionally());
+    }
+
+    @Test
+    public void testWriteQueueFull() throws Exception {
+        Persistence persistence = new Persistence(new Persistence.Configuration.Builder()
+                .writeQueueCapacity(1)
+                .build());
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        persistence.addChangeListener(change -> {
+            committing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            // the writer is held up by the listener of the first write, so only one more write fits in the queue
+            CompletableFuture<Integer> first = persistence.newAnimalAsync(testingAnimals[0]);
+            committing.await();
+            CompletableFuture<Integer> queued = persistence.newAnimalAsync(testingAnimals[0]);
+            CompletableFuture<Integer> rejected = persistence.newAnimalAsync(testingAnimals[0]);
+
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, rejected::get);
+            Assertions.assertTrue(e.getCause() instanceof PersistenceException);
+
+            release.countDown();
+            Assertions.assertNotEquals(first.get(), queued.get());
+        } finally {
+            release.countDown();
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testFailingListener() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        persistence.addChangeListener(change -> {
+            throw new AssertionError("listener failure");
+        });
+
+        // the write has committed, so it must not be reported as failed
+        int intakeNumber = persistence.newAnimal(testingAnimals[0]);
+        Assertions.assertEquals(testingAnimals[0], persistence.getAnimal(intakeNumber));
+        Assertions.assertTrue(persistence.deleteAnimal(intakeNumber));
+    }
+
+    @Test
+    public void testWriteQueueError() throws Exception {
+        ConnectionPool pool = new ConnectionPool(":memory:", 1, 1000, 16);
+        try (WriteQueue queue = new WriteQueue(pool, 64, 0, 16)) {
+            CompletableFuture<Integer> failed = queue.submit(lease -> {
+                throw new StackOverflowError();
+            }, result -> {}, "Failed");
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, failed::get);
+            Assertions.assertTrue(e.getCause() instanceof PersistenceException);
+
+            // the writer survives the error
+            Assertions.assertEquals(1, queue.submit(lease -> 1, result -> {}, "Failed").get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testChangeListener() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        List<AnimalChange> changes = new ArrayList<>();
+        persistence.addChangeListener(changes::add);
+
+        int intakeNumber = persistence.newAnimal(testingAnimals[0]);
+        Assertions.assertTrue(persistence.updateAnimal(intakeNumber, testingAnimals[1]));
+        Assertions.assertTrue(persistence.deleteAnimal(intakeNumber));
+        Assertions.assertFalse(persistence.deleteAnimal(intakeNumber));
+
+        Assertions.assertEquals(3, changes.size());
+        Assertions.assertEquals(AnimalChange.Kind.CREATED, changes.get(0).kind);
+        Assertions.assertEquals(testingAnimals[0], changes.get(0).animal);
+        Assertions.assertEquals(intakeNumber, changes.get(0).animal.intakeNumber);
+        Assertions.assertNull(changes.get(0).previousSpecies);
+
+        Assertions.assertEquals(AnimalChange.Kind.UPDATED, changes.get(1).kind);
+        Assertions.assertEquals(testingAnimals[1], changes.get(1).animal);
+        Assertions.assertEquals(testingAnimals[0].cageNumber, changes.get(1).previousCageNumber);
+        Assertions.assertEquals(testingAnimals[0].species, changes.get(1).previousSpecies);
+
+        Assertions.assertEquals(AnimalChange.Kind.DELETED, changes.get(2).kind);
+        Assertions.assertEquals(intakeNumber, changes.get(2).intakeNumber);
+        Assertions.assertNull(changes.get(2).animal);
+        Assertions.assertEquals(testingAnimals[1].cageNumber, changes.get(2).previousCageNumber);
+        Assertions.assertEquals(testingAnimals[1].species, changes.get(2).previousSpecies);
+    }
+
+    @Test
+    public void testReopenDatabase(@TempDir Path tempDir) throws PersistenceException {
+        String database = tempDir.resolve("getpet.db").toString();
+
+        int intakeNumber;
+        try (Persistence persistence = new Persistence(database)) {
+            intakeNumber = persistence.newAnimal(testingAnimals[0]);
+        }
+
+        // an existing database must not be replaced by the sample data
+        try (Persistence persistence = new Persistence(database)) {
+            Assertions.assertEquals(testingAnimals[0], persistence.getAnimal(intakeNumber));
+        }
+    }
+
+    @Test
+    public void testSnapshot(@TempDir Path tempDir) throws PersistenceException {
+        String snapshot = tempDir.resolve("snapshot.db").toString();
+
+        int intakeNumber;
+        try (Persistence persistence = new Persistence(":memory:")) {
+            intakeNumber = persistence.newAnimal(testingAnimals[0]);
+            persistence.saveSnapshot(snapshot);
+        }
+
+        for (String database : new String[] { ":memory:", tempDir.resolve("restored.db").toString() }) {
+            try (Persistence persistence = new Persistence(new Persistence.Configuration.Builder()
+                    .database(database)
+                    .snapshot(snapshot)
+                    .build())) {
+                Assertions.assertEquals(testingAnimals[0], persistence.getAnimal(intakeNumber));
+                Assertions.assertEquals(10, persistence.search(new SearchQuery(null, null, null, null, null, null, false, false)).length);
+            }
+        }
+    }
+
+    @Test
+    public void testStatementCache() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+
+        persistence.getAnimal(1);
+        CacheStats before = persistence.getStatementCacheStats();
+        persistence.getAnimal(2);
+        CacheStats after = persistence.getStatementCacheStats();
+
+        Assertions.assertEquals(before.hits + 1, after.hits);
+        Assertions.assertEquals(before.misses, after.misses);
+    }
+
+    @Test
+    public void testStatementCacheSizeZero() {
+        // a cache that holds nothing would close each statement as soon as it is prepared
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Persistence.Configuration.Builder().statementCacheSize(0).build());
+    }
+
+    @Test
+    public void testInMemoryDatabaseNames() {
+        Assertions.assertTrue(ConnectionPool.isInMemory(""));
+        Assertions.assertTrue(ConnectionPool.isInMemory(":memory:"));
+        Assertions.assertTrue(ConnectionPool.isInMemory("file::memory:?cache=shared"));
+        Assertions.assertTrue(ConnectionPool.isInMemory("file:pets?mode=memory&cache=shared"));
+        Assertions.assertFalse(ConnectionPool.isInMemory("pets.db"));
+        Assertions.assertFalse(ConnectionPool.isInMemory("file:pets.db?cache=shared"));
+    }
+
+    @Test
+    public void testAnimalCache() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+
+        int intakeNumber = persistence.newAnimal(testingAnimals[0]);
+        Assertions.assertEquals(testingAnimals[0], persistence.getAnimal(intakeNumber));
+        Assertions.assertEquals(testingAnimals[0], persistence.getAnimal(intakeNumber));
+        Assertions.assertEquals(1, persistence.getAnimalCacheStats().hits);
+
+        persistence.updateAnimal(intakeNumber, testingAnimals[1]);
+        Assertions.assertEquals(testingAnimals[1], persistence.getAnimal(intakeNumber));
+
+        persistence.deleteAnimal(intakeNumber);
+        Assertions.assertNull(persistence.getAnimal(intakeNumber));
+    }
+
+    @Test
+    public void testAnimalCacheEviction() throws PersistenceException {
+        Persistence persistence = new Persistence(new Persistence.Configuration.Builder()
+                .animalCacheSize(1)
+                .build());
+
+        persistence.getAnimal(1);
+        persistence.getAnimal(2);
+        persistence.getAnimal(1);
+
+        CacheStats stats = persistence.getAnimalCacheStats();
+        Assertions.assertEquals(0, stats.hits);
+        Assertions.assertEquals(3, stats.misses);
+        Assertions.assertEquals(2, stats.evictions);
+
+        Persistence expiring = new Persistence(new Persistence.Configuration.Builder()
+                .animalCacheTtlMillis(0)
+                .build());
+
+        expiring.getAnimal(1);
+        expiring.getAnimal(1);
+        Assertions.assertEquals(0, expiring.getAnimalCacheStats().hits);
+    }
+
+    @Test
+    public void testSearchCache() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        SearchQuery query = new SearchQuery(null, new Gender[] { Gender.MALE, Gender.FEMALE }, null, null, null, null, false, false);
+        SearchQuery reordered = new SearchQuery(null, new Gender[] { Gender.FEMALE, Gender.MALE, Gender.FEMALE }, null, null, null, null, false, false);
+
+        Animal[] results = persistence.search(query);
+        Assertions.assertArrayEquals(results, persistence.search(reordered));
+        Assertions.assertEquals(1, persistence.getSearchCacheStats().hits);
+
+        // a write must make every cached search go back to the database
+        persistence.newAnimal(testingAnimals[0]);
+        Assertions.assertEquals(results.length + 1, persistence.search(query).length);
+        Assertions.assertEquals(1, persistence.getSearchCacheStats().hits);
+        Assertions.assertEquals(results.length + 1, persistence.search(query).length);
+        Assertions.assertEquals(2, persistence.getSearchCacheStats().hits);
+    }
+
+    @Test
+    public void testColumnarSearch() throws PersistenceException {
+        Persistence sql = new Persistence(new Persistence.Configuration.Builder().searchCacheSize(0).build());
+        Persistence columnar = new Persistence(new Persistence.Configuration.Builder().columnarSearch(true).slowQueryMillis(0).build());
+        // an animal without a name or breed, which the database allows
+        Animal unnamed = new Animal(null, 7, Species.CAT, null, Size.SMALL, new Color[] { Color.BLACK }, Gender.FEMALE, 9.0, false, false, null, false);
+        for (Persistence persistence : new Persistence[] { sql, columnar }) {
+            persistence.newAnimals(List.of(testingAnimals));
+            persistence.newAnimal(unnamed);
+            persistence.newAnimal(unnamed);
+            persistence.updateAnimal(1, testingAnimals[1]);
+            persistence.deleteAnimal(2);
+        }
+
+        SearchQuery[] queries = {
+            new SearchQuery(null, null, null, null, null, null, false, false),
+            new SearchQuery(Species.CAT, null, null, null, null, null, false, false),
+            new SearchQuery(null, new Gender[] { Gender.MALE }, null, new Color[] { Color.WHITE, Color.GOLD }, null, null, true, false),
+            new SearchQuery(null, null, "iNu", null, new Size[] { Size.MEDIUM, Size.LARGE }, null, false, false),
+            new SearchQuery(null, null, null, null, null, 2, false, true),
+            new SearchQuery(null, null, null, null, null, null, false, false, 2, null, SearchQuery.Sort.INTAKE_NUMBER),
+        };
+        for (SearchQuery query : queries) {
+            Assertions.assertArrayEquals(intakeNumbers(sql.search(query)), intakeNumbers(columnar.search(query)));
+
+            // every page must match too
+            for (Animal[] page = sql.search(query); page.length != 0; ) {
+                SearchQuery next = new SearchQuery(query.species, query.genders, query.breed, query.colors, query.sizes, query.cageNumber, query.vaccinated, query.spayNeuter,
+                        2, SearchCursor.after(query.sortOrDefault(), page[page.length - 1]), query.sort);
+                page = sql.search(next);
+                Assertions.assertArrayEquals(intakeNumbers(page), intakeNumbers(columnar.search(next)));
+            }
+        }
+
+        Assertions.assertTrue(Arrays.stream(columnar.getQueryStats()).anyMatch(stats -> stats.operation.equals("columnarSearch") && stats.rows > 0));
+    }
+
+    private static int[] intakeNumbers(Animal[] animals) {
+        return Arrays.stream(animals).mapToInt(animal -> animal.intakeNumber).toArray();
+    }
+
+    @Test
+    public void testSearchColors() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        SearchQuery white = new SearchQuery(null, null, null, new Color[] { Color.WHITE }, null, null, false, false);
+
+        Assertions.assertEquals(3, persistence.search(white).length);
+
+        // the colors of an updated animal must be searchable by their new values only
+        int intakeNumber = persistence.newAnimal(testingAnimals[1]);
+        Assertions.assertEquals(4, persistence.search(white).length);
+        Assertions.assertTrue(persistence.updateAnimal(intakeNumber, testingAnimals[0]));
+        Assertions.assertEquals(3, persistence.search(white).length);
+
+        Assertions.assertTrue(persistence.deleteAnimal(9));
+        Assertions.assertEquals(2, persistence.search(white).length);
+    }
+
+    @Test
+    public void testSearchBreed() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        SearchQuery shepherd = new SearchQuery(null, null, "SHEP", null, null, null, false, false);
+        SearchQuery shortBreed = new SearchQuery(null, null, "co", null, null, null, false, false);
+
+        Assertions.assertEquals(1, persistence.search(shepherd).length);
+        Assertions.assertEquals(1, persistence.search(shortBreed).length);
+
+        // the full-text index must follow updates and deletes
+        int intakeNumber = persistence.newAnimal(testingAnimals[0]);
+        Assertions.assertTrue(persistence.updateAnimal(intakeNumber, new Animal.Builder()
+                .cageNumber(5)
+                .species(Species.DOG)
+                .breed("Australian Shepherd")
+                .size(Size.MEDIUM)
+                .colors(new Color[] { Color.GOLD })
+                .gender(Gender.MALE)
+                .weight(42.0)
+                .vaccinated(true)
+                .spayNeuter(true)
+                .name("Doge")
+                .missing(false)
+                .build()));
+        Assertions.assertEquals(2, persistence.search(shepherd).length);
+        Assertions.assertTrue(persistence.deleteAnimal(intakeNumber));
+        Assertions.assertEquals(1, persistence.search(shepherd).length);
+    }
+
+    @Test
+    public void testSuggestBreeds() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+
+        Assertions.assertArrayEquals(new String[] { "German Shepherd" }, persistence.suggestBreeds("sheperd", 1));
+        Assertions.assertArrayEquals(new String[] { "Shiba Inu", "German Shepherd" }, persistence.suggestBreeds("sh", 5));
+    }
+
+    @Test
+    public void testSearchPages() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        Animal[] all = persistence.search(new SearchQuery(null, null, null, null, null, null, false, false));
+
+        for (SearchQuery.Sort sort : SearchQuery.Sort.values()) {
+            ArrayList<Animal> paged = new ArrayList<>();
+            String after = null;
+            while (true) {
+                Animal[] page = persistence.search(new SearchQuery(null, null, null, null, null, null, false, false, 4, after, sort));
+                paged.addAll(List.of(page));
+                if (page.length < 4)
+                    break;
+                after = SearchCursor.after(sort, page[page.length - 1]);
+            }
+
+            Assertions.assertEquals(all.length, paged.size());
+            for (int i = 1; i < paged.size(); ++i) {
+                Animal previous = paged.get(i - 1);
+                Animal current = paged.get(i);
+                if (sort == SearchQuery.Sort.NAME)
+                    Assertions.assertTrue(previous.name.compareTo(current.name) <= 0);
+                else
+                    Assertions.assertTrue(previous.intakeNumber < current.intakeNumber);
+            }
+        }
+    }
+
+    @Test
+    public void testSearchPagesUnnamed() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        // the Builder requires a name, but the database does not
+        Animal unnamed = new Animal(null, 7, Species.CAT, "Tabby", Size.SMALL, new Color[] { Color.BLACK }, Gender.FEMALE, 9.0, false, false, null, false);
+        int first = persistence.newAnimal(unnamed);
+        int second = persistence.newAnimal(unnamed);
+        int total = persistence.search(new SearchQuery(null, null, null, null, null, null, false, false)).length;
+
+        ArrayList<Animal> paged = new ArrayList<>();
+        String after = null;
+        while (true) {
+            Animal[] page = persistence.search(new SearchQuery(null, null, null, null, null, null, false, false, 1, after, SearchQuery.Sort.NAME));
+            paged.addAll(List.of(page));
+            if (page.length < 1)
+                break;
+            after = SearchCursor.after(SearchQuery.Sort.NAME, page[page.length - 1]);
+        }
+
+        Assertions.assertEquals(total, paged.size());
+        Assertions.assertEquals(first, paged.get(0).intakeNumber);
+        Assertions.assertEquals(second, paged.get(1).intakeNumber);
+        for (int i = 3; i < paged.size(); ++i)
+            Assertions.assertTrue(paged.get(i - 1).name.compareTo(paged.get(i).name) <= 0);
+    }
+
+    @Test
+    public void testSearchInvalidCursor() throws PersistenceException {
+        Persistence persistence = new Persistence(":memory:");
+        String byIntakeNumber = SearchCursor.after(SearchQuery.Sort.INTAKE_NUMBER, persistence.getAnimal(1));
+
+        Assertions.assertThrows(PersistenceException.class, () -> persistence.search(
+                new SearchQuery(null, null, null, null, null, null, false, false, 4, byIntakeNumber, SearchQuery.Sort.NAME)));
+        Assertions.assertThrows(PersistenceException.class, () -> persistence.search(
+                new SearchQuery(null, null, null, null, null, null, false, false, 4, "garbage", null)));
+    }
 }
@@ -6,6 +6,10 @@ import java.util.Map;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.SerializedName;
+
 import cs340.getpet.persistence.Color;
 import cs340.getpet.persistence.Gender;
 import cs340.getpet.persistence.Size;
@@ -53,6 +57,40 @@ public class TestEnumSerializer {
         testEnumDeserialization(Map.of("small", Size.SMALL, "medium", Size.MEDIUM, "large", Size.LARGE), Size.class);
     }
 
+    @Test
+    public void testUnknownDeserialization() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> EnumSerializer.fromString("dragon", Species.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Color.fromString("Black"));
+        Assertions.assertNull(Size.fromString(null));
+    }
+
+    @Test
+    public void testJsonAdapter() {
+        Gson gson = new Gson();
+
+        Assertions.assertEquals("\"dGray\"", gson.toJson(Color.DARK_GRAY));
+        Assertions.assertArrayEquals(new Gender[] { Gender.FEMALE, null }, gson.fromJson("[\"f\", null]", Gender[].class));
+        Assertions.assertThrows(JsonSyntaxException.class, () -> gson.fromJson("[\"x\"]", Gender[].class));
+    }
+
+    @Test
+    public void testCollidingHashCodes() {
+        Assertions.assertEquals("Aa".hashCode(), "BB".hashCode());
+        EnumCodec<Colliding> codec = EnumCodec.of(Colliding.class);
+
+        Assertions.assertEquals(Colliding.AA, codec.fromString("Aa"));
+        Assertions.assertEquals(Colliding.BB, codec.fromString("BB"));
+        Assertions.assertEquals(Colliding.C, codec.fromString("C"));
+        Assertions.assertEquals("Aa", codec.toString(Colliding.AA));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> codec.fromString("AaBB"));
+    }
+
+    private enum Colliding {
+        @SerializedName("Aa") AA,
+        BB,
+        C,
+    }
+
     private <T extends Enum<T>> void testEnumSerialization(Map<T, String> expected, Class<T> clazz) {
         expected = new IdentityHashMap<>(expected);
 
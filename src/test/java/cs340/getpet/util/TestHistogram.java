@@ -0,0 +1,55 @@
+package cs340.getpet.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestHistogram {
+    @Test
+    public void testEmpty() {
+        Histogram.Snapshot snapshot = new Histogram().snapshot();
+
+        Assertions.assertEquals(0, snapshot.count);
+        Assertions.assertEquals(0, snapshot.valueAt(0.99));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int value = 0; value < 16; ++value)
+            histogram.record(value);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        Assertions.assertEquals(16, snapshot.count);
+        Assertions.assertEquals(120, snapshot.sum);
+        Assertions.assertEquals(15, snapshot.max);
+        Assertions.assertEquals(7, snapshot.valueAt(0.5));
+        Assertions.assertEquals(15, snapshot.valueAt(1.0));
+    }
+
+    @Test
+    public void testQuantilesWithinRelativeError() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 100_000; ++value)
+            histogram.record(value);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        for (double quantile : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+            double exact = quantile * 100_000;
+            long value = snapshot.valueAt(quantile);
+            Assertions.assertTrue(value >= exact && value <= exact * 17 / 16, quantile + " -> " + value);
+        }
+        Assertions.assertEquals(100_000, snapshot.valueAt(1.0));
+    }
+
+    @Test
+    public void testLargeAndNegativeValues() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        Assertions.assertEquals(0, snapshot.valueAt(0.5));
+        Assertions.assertTrue(snapshot.valueAt(1.0) > 0);
+        Assertions.assertEquals(2, snapshot.count);
+    }
+}